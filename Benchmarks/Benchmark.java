@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark harness for the exercises, working like JMH in its essentials: every case runs in JVMs of its own, so
+ * the JIT compiles and profiles the code of that case only, it is warmed up before it is measured, the results of
+ * the measured code are consumed by a Blackhole so the JIT cannot remove the code as dead, and the scores are saved
+ * as JSON in the layout JMH uses, with an error margin at 99.9% confidence.
+ *
+ * Compile the exercises and this directory, and run from the repository root, e.g.
+ *      java -cp out/recursion:out/graphs:out/compression:scala-library.jar:out/benchmarks Benchmark -rff new.json
+ * Options, named as in JMH:
+ *      -wi n           warmup iterations per case (default 5)
+ *      -i n            measured iterations per case (default 10)
+ *      -w ms, -r ms    length of each warmup and measured iteration (default 1000)
+ *      -f n            JVMs forked per case, with the same class path and JVM options (default 1). with 0, every
+ *                      case runs in this JVM, where the cases run before it skew how the JIT compiles it
+ *      -rff file       where to save the results as JSON
+ *      -baseline file  results of an earlier version, each case is compared to. exits with status 1 on regressions
+ *      -corpus dir     files to compress, instead of the generated corpus
+ *      anything else   regular expression, only cases whose name it is found in are run
+ */
+
+public class Benchmark {
+
+    // written once all cases are done, so what the blackholes consumed is never dead
+    private static volatile long sink;
+
+    /**
+     * The code being measured. Whatever it computes must be given to the blackhole.
+     */
+
+    interface Body {
+        void run(Blackhole blackhole) throws Exception;
+    }
+
+    /**
+     * Consumes results, the way JMH's Blackhole does, cheaply but visibly to the JIT.
+     */
+
+    static final class Blackhole {
+        private long hash;
+        private Object last;
+
+        void consume(long value){
+            hash = 31 * hash + value;
+        }
+
+        void consume(double value){
+            consume(Double.doubleToRawLongBits(value));
+        }
+
+        void consume(Object value){
+            last = value;
+        }
+    }
+
+    /**
+     * One measured piece of code with its parameters. Cases with a byte count are scored as throughput in MB/s,
+     * the others as average time per operation in the unit given.
+     */
+
+    static final class Case {
+        final String name;
+        final Map<String, String> params = new LinkedHashMap<>();
+        final Body body;
+        final String unit;
+        final double nanosPerUnit;
+        final long bytes;
+
+        private Case(String name, Body body, String unit, double nanosPerUnit, long bytes){
+            this.name = name;
+            this.body = body;
+            this.unit = unit;
+            this.nanosPerUnit = nanosPerUnit;
+            this.bytes = bytes;
+        }
+
+        static Case averageTime(String name, String unit, Body body){
+            switch (unit){
+                case "ns/op": return new Case(name, body, unit, 1, 0);
+                case "us/op": return new Case(name, body, unit, 1e3, 0);
+                case "ms/op": return new Case(name, body, unit, 1e6, 0);
+                default: throw new IllegalArgumentException("Unknown unit " + unit);
+            }
+        }
+
+        static Case throughput(String name, long bytesPerOperation, Body body){
+            return new Case(name, body, "MB/s", 0, bytesPerOperation);
+        }
+
+        Case param(String key, Object value){
+            params.put(key, String.valueOf(value));
+            return this;
+        }
+
+        String key(){
+            return name + params;
+        }
+
+        boolean isThroughput(){
+            return bytes > 0;
+        }
+
+        // score of an iteration running the body the given number of times
+        double score(long operations, long nanos){
+            return isThroughput() ? bytes * operations * 1e3 / nanos : nanos / nanosPerUnit / operations;
+        }
+    }
+
+    /**
+     * Score of a case, from the score of every measured iteration.
+     */
+
+    static final class Result {
+        final Case benchmark;
+        final double[][] rawData; // scores of the measured iterations, per fork
+        final int forks;
+        final double[] scores;
+        final double score;
+        final double error;
+
+        Result(Case benchmark, double[][] rawData, int forks){
+            this.benchmark = benchmark;
+            this.rawData = rawData;
+            this.forks = forks;
+            scores = Arrays.stream(rawData).flatMapToDouble(Arrays::stream).toArray();
+            double sum = 0;
+            for (double score : scores) sum += score;
+            score = sum / scores.length;
+
+            double squares = 0;
+            for (double score : scores) squares += (score - this.score) * (score - this.score);
+            error = scores.length < 2 ? Double.NaN
+                    : studentT(scores.length - 1) * Math.sqrt(squares / (scores.length - 1) / scores.length);
+        }
+
+        // 99.95% quantile of student's t distribution, making score +- error a two-sided 99.9% interval
+        private static double studentT(int degreesOfFreedom){
+            double[] table = {636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59, 4.44, 4.32, 4.22, 4.14, 4.07,
+                    4.01, 3.97, 3.92, 3.88, 3.85, 3.82, 3.79, 3.77, 3.75, 3.73, 3.71, 3.69, 3.67, 3.66, 3.65};
+            return degreesOfFreedom <= table.length ? table[degreesOfFreedom - 1] : 3.29;
+        }
+
+        /**
+         * @return Whether this result is worse than the other beyond both error margins.
+         */
+
+        boolean isWorseThan(double otherScore, double otherError){
+            double margin = (Double.isNaN(error) ? 0 : error) + (Double.isNaN(otherError) ? 0 : otherError);
+            return benchmark.isThroughput() ? score + margin < otherScore : score - margin > otherScore;
+        }
+
+        String toJson(int warmupIterations, long warmupMillis, long measurementMillis){
+            StringBuilder params = new StringBuilder();
+            benchmark.params.forEach((key, value) ->
+                    params.append(params.length() == 0 ? "" : ", ").append(quote(key)).append(" : ").append(quote(value)));
+            StringBuilder raw = new StringBuilder();
+            for (double[] fork : rawData) {
+                StringBuilder iterations = new StringBuilder();
+                for (double score : fork) iterations.append(iterations.length() == 0 ? "" : ", ").append(number(score));
+                raw.append(raw.length() == 0 ? "[" : ", [").append(iterations).append("]");
+            }
+
+            return String.format(Locale.ROOT, "{\"benchmark\" : %s, \"mode\" : %s, \"threads\" : 1, \"forks\" : %d, " +
+                            "\"jdkVersion\" : %s, \"vmName\" : %s, " +
+                            "\"warmupIterations\" : %d, \"warmupTime\" : \"%d ms\", " +
+                            "\"measurementIterations\" : %d, \"measurementTime\" : \"%d ms\", \"params\" : {%s}, " +
+                            "\"primaryMetric\" : {\"score\" : %s, \"scoreError\" : %s, \"scoreConfidence\" : [%s, %s], " +
+                            "\"scoreUnit\" : %s, \"rawData\" : [%s]}}",
+                    quote(benchmark.name), quote(benchmark.isThroughput() ? "thrpt" : "avgt"), forks,
+                    quote(System.getProperty("java.version")), quote(System.getProperty("java.vm.name")),
+                    warmupIterations, warmupMillis, rawData[0].length, measurementMillis, params,
+                    number(score), number(error), number(score - error), number(score + error),
+                    quote(benchmark.unit), raw);
+        }
+
+        private static String number(double value){
+            return Double.isNaN(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6g", value);
+        }
+
+        private static String quote(String text){
+            return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+
+    private int warmupIterations = 5;
+    private int measurementIterations = 10;
+    private long warmupMillis = 1000;
+    private long measurementMillis = 1000;
+    private int forks = 1;
+
+    /**
+     * Runs the body in batches until the time is up. The batch size doubles until a batch takes a millisecond,
+     * so that reading the clock costs little next to the code being measured.
+     * @return The score of the iteration.
+     */
+
+    private static double iteration(Case benchmark, Blackhole blackhole, long millis, long[] batch) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long deadline = start + millis * 1_000_000;
+        long now;
+        do {
+            long batchStart = System.nanoTime();
+            for (long i = 0; i < batch[0]; i++) benchmark.body.run(blackhole);
+            operations += batch[0];
+            now = System.nanoTime();
+            if(now - batchStart < 1_000_000) batch[0] *= 2;
+        } while (now < deadline);
+        return benchmark.score(operations, now - start);
+    }
+
+    // warms up and measures the case in this JVM
+    double[] measure(Case benchmark) throws Exception {
+        Blackhole blackhole = new Blackhole();
+        long[] batch = {1};
+        for (int i = 0; i < warmupIterations; i++) iteration(benchmark, blackhole, warmupMillis, batch);
+
+        double[] scores = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) scores[i] = iteration(benchmark, blackhole, measurementMillis, batch);
+        sink += blackhole.hash + System.identityHashCode(blackhole.last);
+        return scores;
+    }
+
+    Result run(Case benchmark, int index, Path corpus) throws Exception {
+        if(forks == 0) return new Result(benchmark, new double[][]{measure(benchmark)}, 0);
+        double[][] rawData = new double[forks][];
+        for (int fork = 0; fork < forks; fork++) rawData[fork] = fork(index, corpus);
+        return new Result(benchmark, rawData, forks);
+    }
+
+    /**
+     * Measures the case with the index in a new JVM, started with the class path and options of this one. The fork
+     * builds the same list of cases, runs the one case, and prints its scores on a line starting with "scores".
+     */
+
+    private double[] fork(int index, Path corpus) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "Benchmark", "-fork", String.valueOf(index),
+                "-wi", String.valueOf(warmupIterations), "-i", String.valueOf(measurementIterations),
+                "-w", String.valueOf(warmupMillis), "-r", String.valueOf(measurementMillis)));
+        if(corpus != null) command.addAll(List.of("-corpus", corpus.toString()));
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String output = new String(process.getInputStream().readAllBytes());
+        if(process.waitFor() != 0) throw new IOException("Fork of benchmark " + index + " exited with status " + process.exitValue());
+        for (String line : output.split("\\R")) {
+            if(line.startsWith("scores ")) return Arrays.stream(line.substring(7).split(" ")).mapToDouble(Double::parseDouble).toArray();
+        }
+        throw new IOException("Fork of benchmark " + index + " printed no scores");
+    }
+
+    /**
+     * Reads the scores of a JSON file written by this harness or by JMH, keyed by benchmark name and parameters.
+     * @return Score and error of every benchmark in the file.
+     */
+
+    static Map<String, double[]> readScores(Path file) throws IOException {
+        Pattern name = Pattern.compile("^\\s*:\\s*\"([^\"]*)\"");
+        Pattern params = Pattern.compile("\"params\"\\s*:\\s*\\{([^}]*)}");
+        Pattern param = Pattern.compile("\"([^\"]*)\"\\s*:\\s*\"([^\"]*)\"");
+        Pattern score = Pattern.compile("\"score\"\\s*:\\s*([-0-9.eE+]+)");
+        Pattern error = Pattern.compile("\"scoreError\"\\s*:\\s*([-0-9.eE+]+)");
+
+        Map<String, double[]> scores = new LinkedHashMap<>();
+        String[] results = Files.readString(file).split("\"benchmark\"");
+        for (int i = 1; i < results.length; i++) {
+            Matcher matcher = name.matcher(results[i]);
+            Matcher scoreMatcher = score.matcher(results[i]);
+            if(!matcher.find() || !scoreMatcher.find()) throw new IOException("Unreadable result in " + file);
+
+            Map<String, String> values = new LinkedHashMap<>();
+            Matcher paramsMatcher = params.matcher(results[i]);
+            if(paramsMatcher.find()) {
+                Matcher paramMatcher = param.matcher(paramsMatcher.group(1));
+                while (paramMatcher.find()) values.put(paramMatcher.group(1), paramMatcher.group(2));
+            }
+            Matcher errorMatcher = error.matcher(results[i]);
+            scores.put(matcher.group(1) + values, new double[]{Double.parseDouble(scoreMatcher.group(1)),
+                    errorMatcher.find() ? Double.parseDouble(errorMatcher.group(1)) : Double.NaN});
+        }
+        return scores;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Benchmark harness = new Benchmark();
+        Path resultFile = null;
+        Path baselineFile = null;
+        Path corpus = null;
+        int forkedCase = -1;
+        List<Pattern> filters = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]){
+                case "-wi": harness.warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": harness.measurementIterations = Integer.parseInt(args[++i]); break;
+                case "-w": harness.warmupMillis = Long.parseLong(args[++i]); break;
+                case "-r": harness.measurementMillis = Long.parseLong(args[++i]); break;
+                case "-f": harness.forks = Integer.parseInt(args[++i]); break;
+                case "-fork": forkedCase = Integer.parseInt(args[++i]); break;
+                case "-rff": resultFile = Path.of(args[++i]); break;
+                case "-baseline": baselineFile = Path.of(args[++i]); break;
+                case "-corpus": corpus = Path.of(args[++i]); break;
+                default: filters.add(Pattern.compile(args[i]));
+            }
+        }
+        if(harness.measurementIterations < 1) throw new IllegalArgumentException("At least one measured iteration is needed");
+        if(harness.forks < 0) throw new IllegalArgumentException("The number of forks cannot be negative");
+        Map<String, double[]> baseline = baselineFile == null ? Map.of() : readScores(baselineFile);
+
+        List<Case> cases = new ArrayList<>();
+        RecursionBenchmarks.addTo(cases);
+        GraphBenchmarks.addTo(cases);
+        CompressionBenchmarks.addTo(cases, corpus);
+
+        if(forkedCase >= 0) {
+            StringBuilder scores = new StringBuilder("scores");
+            for (double score : harness.measure(cases.get(forkedCase))) scores.append(" ").append(score);
+            System.out.println(scores);
+            if(sink == 42) System.out.println();
+            return;
+        }
+
+        List<String> json = new ArrayList<>();
+        int regressions = 0;
+        System.out.printf("%-45s %-30s %12s %12s  %s%n", "Benchmark", "Params", "Score", "Error", "Units");
+        for (int index = 0; index < cases.size(); index++) {
+            Case benchmark = cases.get(index);
+            if(!filters.isEmpty() && filters.stream().noneMatch(filter -> filter.matcher(benchmark.name).find())) continue;
+
+            Result result = harness.run(benchmark, index, corpus);
+            json.add(result.toJson(harness.warmupIterations, harness.warmupMillis, harness.measurementMillis));
+
+            String comparison = "";
+            double[] earlier = baseline.get(benchmark.key());
+            if(earlier != null) {
+                boolean regressed = result.isWorseThan(earlier[0], earlier[1]);
+                if(regressed) regressions++;
+                comparison = String.format(Locale.ROOT, "  %+.1f%% against baseline%s",
+                        100 * (result.score - earlier[0]) / earlier[0], regressed ? ", REGRESSION" : "");
+            }
+            System.out.printf(Locale.ROOT, "%-45s %-30s %12.3f %12.3f  %s%s%n",
+                    benchmark.name, benchmark.params, result.score, result.error, benchmark.unit, comparison);
+        }
+
+        if(resultFile != null) Files.writeString(resultFile, "[\n    " + String.join(",\n    ", json) + "\n]\n");
+        if(sink == 42) System.out.println();
+        if(regressions > 0) {
+            System.out.println(regressions + " benchmarks regressed");
+            System.exit(1);
+        }
+    }
+}
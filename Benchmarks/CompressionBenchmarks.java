@@ -0,0 +1,85 @@
+import Compression.CompressionLevel;
+import Compression.HuffmanCodec;
+import Compression.LZCompressor;
+import Compression.LZDecompressor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of the two stages from Øving 7, in MB of uncompressed data per second. Without a corpus directory
+ * the data is generated from fixed seeds, so every version is measured on the same bytes.
+ */
+
+class CompressionBenchmarks {
+
+    private static final int GENERATED_SIZE = 1 << 20;
+
+    static void addTo(List<Benchmark.Case> cases, Path corpus) throws IOException {
+        for (Map.Entry<String, byte[]> file : (corpus == null ? generated() : read(corpus)).entrySet()) {
+            byte[] raw = file.getValue();
+            for (CompressionLevel level : CompressionLevel.values()) {
+                cases.add(Benchmark.Case.throughput("LZCompressor.compress", raw.length,
+                        blackhole -> blackhole.consume(LZCompressor.compress(raw, level)))
+                        .param("file", file.getKey()).param("level", level));
+            }
+
+            byte[] lz77Code = LZCompressor.compress(raw);
+            cases.add(Benchmark.Case.throughput("LZDecompressor.decompress", raw.length,
+                    blackhole -> blackhole.consume(LZDecompressor.decompress(lz77Code)))
+                    .param("file", file.getKey()));
+
+            byte[] huffmanCode = HuffmanCodec.construct(raw).encode(raw);
+            cases.add(Benchmark.Case.throughput("HuffmanCodec.encode", raw.length,
+                    blackhole -> blackhole.consume(HuffmanCodec.construct(raw).encode(raw)))
+                    .param("file", file.getKey()));
+            cases.add(Benchmark.Case.throughput("HuffmanCodec.decode", raw.length,
+                    blackhole -> blackhole.consume(HuffmanCodec.reconstruct(huffmanCode).decode(huffmanCode)))
+                    .param("file", file.getKey()));
+        }
+    }
+
+    private static Map<String, byte[]> read(Path corpus) throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        try (Stream<Path> paths = Files.list(corpus)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile).sorted()::iterator)
+                files.put(path.getFileName().toString(), Files.readAllBytes(path));
+        }
+        if(files.isEmpty()) throw new IOException("No files in " + corpus);
+        return files;
+    }
+
+    // text of words drawn with falling frequency, and a little endian series of slowly changing numbers
+    private static Map<String, byte[]> generated(){
+        String[] words = ("the of and to in is that for it as was with be by on not he this are or his from at which " +
+                "but have an they you were her she there been one all we their has would when if so no will more " +
+                "graph node edge component compression huffman reference literal window algorithm recursion").split(" ");
+        Random random = new Random(2101);
+        StringBuilder text = new StringBuilder(GENERATED_SIZE);
+        while (text.length() < GENERATED_SIZE) {
+            // the square skews the choice towards the first words
+            double skew = random.nextDouble();
+            text.append(words[(int) (skew * skew * words.length)]);
+            text.append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+
+        byte[] series = new byte[GENERATED_SIZE];
+        int value = 0;
+        for (int i = 0; i < series.length; i += Integer.BYTES) {
+            value += random.nextInt(64) - 32;
+            for (int b = 0; b < Integer.BYTES; b++) series[i + b] = (byte) (value >>> 8 * b);
+        }
+
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("text", text.substring(0, GENERATED_SIZE).getBytes(StandardCharsets.US_ASCII));
+        files.put("series", series);
+        return files;
+    }
+}
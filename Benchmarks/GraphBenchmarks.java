@@ -0,0 +1,56 @@
+import AlgDat.Graphs.Graph;
+import AlgDat.Graphs.IntGraph;
+import AlgDat.Graphs.InternedGraph;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Building and splitting random graphs from Øving 5 with an average out-degree of 4, which gives one
+ * giant strongly connected component and many single vertices around it. InternedGraph is built from the
+ * same edges, to compare it with Graph.
+ */
+
+class GraphBenchmarks {
+
+    private static final int DEGREE = 4;
+
+    static void addTo(List<Benchmark.Case> cases){
+        for (int size : new int[]{1_000, 10_000, 100_000}) {
+            // the IDs are boxed up front, so addEdge is measured rather than Integer.valueOf
+            Random random = new Random(size);
+            Integer[] sources = new Integer[DEGREE * size];
+            Integer[] targets = new Integer[DEGREE * size];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = random.nextInt(size);
+                targets[i] = random.nextInt(size);
+            }
+
+            Graph<Integer> graph = new Graph<>(size);
+            for (int i = 0; i < sources.length; i++) graph.addEdge(sources[i], targets[i]);
+            IntGraph intGraph = IntGraph.of(graph);
+            InternedGraph<Integer> interned = InternedGraph.withIntegerIds(size);
+            for (int i = 0; i < sources.length; i++) interned.addEdge(sources[i], targets[i]);
+
+            cases.add(Benchmark.Case.averageTime("Graph.addEdge", "ms/op", blackhole -> {
+                Graph<Integer> built = new Graph<>(size);
+                for (int i = 0; i < sources.length; i++) built.addEdge(sources[i], targets[i]);
+                blackhole.consume(built);
+            }).param("vertices", size).param("edges", sources.length));
+            cases.add(Benchmark.Case.averageTime("Graph.stronglyConnectedComponents", "ms/op",
+                    blackhole -> blackhole.consume(graph.stronglyConnectedComponents()))
+                    .param("vertices", size).param("edges", sources.length));
+            cases.add(Benchmark.Case.averageTime("InternedGraph.addEdge", "ms/op", blackhole -> {
+                InternedGraph<Integer> built = InternedGraph.withIntegerIds(size);
+                for (int i = 0; i < sources.length; i++) built.addEdge(sources[i], targets[i]);
+                blackhole.consume(built);
+            }).param("vertices", size).param("edges", sources.length));
+            cases.add(Benchmark.Case.averageTime("InternedGraph.stronglyConnectedComponents", "ms/op",
+                    blackhole -> blackhole.consume(interned.stronglyConnectedComponents()))
+                    .param("vertices", size).param("edges", sources.length));
+            cases.add(Benchmark.Case.averageTime("IntGraph.components", "ms/op",
+                    blackhole -> blackhole.consume(intGraph.components()))
+                    .param("vertices", size).param("edges", sources.length));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+import java.util.List;
+
+/**
+ * The two recursive powers from Øving 1 and their iterative version against Math.pow, for the exponents
+ * Main.benchmark times. The batch version fills an array of powers per operation.
+ */
+
+class RecursionBenchmarks {
+
+    // read for every call, so the JIT cannot compute the power once and hoist it out of the loop
+    private static volatile double x = 10000;
+
+    private static final int BATCH = 1024;
+
+    static void addTo(List<Benchmark.Case> cases){
+        double[] xs = new double[BATCH];
+        double[] out = new double[BATCH];
+        for (int i = 0; i < BATCH; i++) xs[i] = 1 + i / (double) BATCH;
+
+        for (int n : new int[]{10, 100, 1000, 10000}) {
+            cases.add(Benchmark.Case.averageTime("Recursion.recursiveTest1", "ns/op",
+                    blackhole -> blackhole.consume(Main.recursiveTest1(x, n))).param("n", n));
+            cases.add(Benchmark.Case.averageTime("Recursion.recursiveTest2", "ns/op",
+                    blackhole -> blackhole.consume(Main.recursiveTest2(x, n))).param("n", n));
+            cases.add(Benchmark.Case.averageTime("Recursion.iterative", "ns/op",
+                    blackhole -> blackhole.consume(Power.pow(x, n))).param("n", n));
+            cases.add(Benchmark.Case.averageTime("Recursion.iterativeBatch", "ns/op", blackhole -> {
+                Power.pow(xs, n, out);
+                blackhole.consume(out[n % BATCH]);
+            }).param("n", n).param("values", BATCH));
+            cases.add(Benchmark.Case.averageTime("Recursion.mathPow", "ns/op",
+                    blackhole -> blackhole.consume(Math.pow(x, n))).param("n", n));
+        }
+    }
+}
@@ -14,6 +14,7 @@ public class Main {
         System.out.println("Testing for correct result:");
         System.out.printf("Algorithm 1: (2^10) value: %.4f%n", recursiveTest1(2, 10));
         System.out.printf("Algorithm 2: (3^14) value: %.4f%n", recursiveTest2(3, 14));
+        System.out.printf("Iterative: (2^10) & (3^14) values: %.4f, %.4f%n", Power.pow(2.0, 10), Power.pow(3.0, 14));
         System.out.printf("Math.pow: (2^10) & (3^14) values: %.4f, %.4f%n\n", Math.pow(2, 10), Math.pow(3, 14));
 
         runs = (int) 1e7;
@@ -51,7 +52,8 @@ public class Main {
     }
 
     /**
-     * Runs a benchmark test between the two recursive tests and Math.pow, and outputs execution time.
+     * Runs a benchmark test between the two recursive tests, the iterative Power.pow and Math.pow, and outputs execution time.
+     * The timings are rough, as nothing is warmed up. Benchmarks/Benchmark measures the same calls properly.
      *
      * @param runs Number of runs
      * @param x Value x (double)
@@ -77,7 +79,15 @@ public class Main {
         endTime = new Date();
         System.out.printf("Algorithm 2 (running %d times): %d ms%n", runs, (endTime.getTime() - startTime.getTime()));
 
-        // Test 3 with Math.pow
+        // Test 3 with the iterative version
+        startTime = new Date();
+        for (int i = 0; i < runs; i++) {
+            Power.pow(x, n);
+        }
+        endTime = new Date();
+        System.out.printf("Iterative (running %d times): %d ms%n", runs, (endTime.getTime() - startTime.getTime()));
+
+        // Test 4 with Math.pow
         startTime = new Date();
         for (int i = 0; i < runs; i++) {
             Math.pow(x, n);
@@ -0,0 +1,203 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * Iterative versions of the powers in Main, by square-and-multiply as in recursiveTest2.
+ * x^n is the product of x^(2^k) for every bit k set in n, so the loop squares x once per bit of n
+ * and multiplies it into the result where the bit is set. That takes O(log n) steps and no stack.
+ */
+public final class Power {
+
+    // the batch pow works through the arrays in blocks of this many values, so they stay in the L1 cache
+    private static final int BLOCK = 512;
+
+    private Power() {
+    }
+
+    /**
+     * x^n for any n, x^-n being 1/x^n. Where x^n overflows or underflows while 1/x^n does not, x^-n is computed
+     * as (1/x)^n instead, so a power in the range of double is not lost to the intermediate result.
+     * <p>
+     * Unlike Math.pow, which is within 1 ulp of the exact power, this is not correctly rounded: every squaring
+     * doubles the rounding error carried so far, so the relative error grows to about n ulps for large n,
+     * e.g. around 1e-12 for n = 10000. For (1/x)^n, the rounding of 1/x is carried the same way.
+     *
+     * @param x Value x (double)
+     * @param n Exponent (integer)
+     * @return Calculated value
+     */
+    public static double pow(double x, int n) {
+        // a long, as -Integer.MIN_VALUE does not fit in an int
+        long bits = Math.abs((long) n);
+        double result = unsignedPow(x, bits);
+        if (n >= 0) {
+            return result;
+        }
+        return outOfRange(result) ? unsignedPow(1 / x, bits) : 1 / result;
+    }
+
+    // x^n for n >= 0
+    private static double unsignedPow(double x, long n) {
+        double result = 1;
+        for (double base = x; n != 0; n >>>= 1) {
+            if ((n & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+        }
+        return result;
+    }
+
+    // whether 1/power would be infinite, or only as precise as a subnormal power
+    private static boolean outOfRange(double power) {
+        return Double.isInfinite(power) || Math.abs(power) < Double.MIN_NORMAL;
+    }
+
+    /**
+     * Exact x^n.
+     *
+     * @param x Value x (long)
+     * @param n Exponent, not negative (integer)
+     * @return Calculated value
+     * @throws ArithmeticException If the result does not fit in a long.
+     */
+    public static long pow(long x, int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Negative exponent " + n + " has no exact long power");
+        }
+        long result = 1;
+        long base = x;
+        while (n != 0) {
+            if ((n & 1) != 0) {
+                result = Math.multiplyExact(result, base);
+            }
+            n >>>= 1;
+            // the square is only needed for the bits left, whose product would overflow if the square does
+            if (n != 0) {
+                base = Math.multiplyExact(base, base);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * x^n mod m, which never overflows.
+     *
+     * @param x Value x, may be negative (long)
+     * @param n Exponent, not negative (long)
+     * @param m Modulus, positive (long)
+     * @return Calculated value, between 0 and m - 1
+     */
+    public static long powMod(long x, long n, long m) {
+        if (n < 0 || m <= 0) {
+            throw new IllegalArgumentException("Need n >= 0 and m > 0, got n=" + n + " and m=" + m);
+        }
+        long result = 1 % m;
+        for (long base = Math.floorMod(x, m); n != 0; n >>>= 1) {
+            if ((n & 1) != 0) {
+                result = multiplyMod(result, base, m);
+            }
+            base = multiplyMod(base, base, m);
+        }
+        return result;
+    }
+
+    // a * b mod m for 0 <= a, b < m
+    private static long multiplyMod(long a, long b, long m) {
+        if (((a | b) >>> 31) == 0) {
+            return a * b % m;
+        }
+
+        // the product has 128 bits, and its high half is below m. the low half is shifted in as many bits
+        // at a time as fit above the remainder, which is also below m
+        long remainder = Math.multiplyHigh(a, b);
+        long low = a * b;
+        int step = Long.numberOfLeadingZeros(m);
+        for (int left = Long.SIZE; left > 0; left -= step) {
+            int shift = Math.min(step, left);
+            remainder = Long.remainderUnsigned(remainder << shift | low >>> (Long.SIZE - shift), m);
+            low <<= shift;
+        }
+        return remainder;
+    }
+
+    /**
+     * Exact x^n. BigInteger.pow already squares and multiplies, and treats powers of two as shifts.
+     *
+     * @param x Value x (BigInteger)
+     * @param n Exponent, not negative (integer)
+     * @return Calculated value
+     */
+    public static BigInteger pow(BigInteger x, int n) {
+        return x.pow(n);
+    }
+
+    /**
+     * Exact x^n, with n times the scale of x.
+     *
+     * @param x Value x (BigDecimal)
+     * @param n Exponent, not negative (integer)
+     * @return Calculated value
+     */
+    public static BigDecimal pow(BigDecimal x, int n) {
+        return x.pow(n);
+    }
+
+    /**
+     * x^n rounded to the precision of the context, which also allows negative n.
+     *
+     * @param x Value x (BigDecimal)
+     * @param n Exponent (integer)
+     * @param context Precision and rounding of the result
+     * @return Calculated value
+     */
+    public static BigDecimal pow(BigDecimal x, int n, MathContext context) {
+        return x.pow(n, context);
+    }
+
+    /**
+     * out[i] = x^n for every x = xs[i], the same values pow(x, n) gives. The loop over the bits of n is outermost,
+     * so the inner loops are plain element-wise products, which the JIT compiles to SIMD instructions.
+     *
+     * @param xs Values x (double[])
+     * @param n Exponent (integer)
+     * @param out Array for the results, as long as xs at least. May be xs itself.
+     */
+    public static void pow(double[] xs, int n, double[] out) {
+        if (out.length < xs.length) {
+            throw new IllegalArgumentException("Output holds " + out.length + " values, needs " + xs.length);
+        }
+        double[] base = new double[Math.min(BLOCK, xs.length)];
+        // the values of the block, kept for negative n, as out may be xs
+        double[] values = n < 0 ? new double[base.length] : null;
+        long exponent = Math.abs((long) n);
+
+        for (int from = 0; from < xs.length; from += BLOCK) {
+            int length = Math.min(BLOCK, xs.length - from);
+            System.arraycopy(xs, from, base, 0, length);
+            if (n < 0) {
+                System.arraycopy(base, 0, values, 0, length);
+            }
+            Arrays.fill(out, from, from + length, 1);
+
+            for (long bits = exponent; bits != 0; bits >>>= 1) {
+                if ((bits & 1) != 0) {
+                    for (int i = 0; i < length; i++) {
+                        out[from + i] *= base[i];
+                    }
+                }
+                for (int i = 0; i < length; i++) {
+                    base[i] *= base[i];
+                }
+            }
+            if (n < 0) {
+                for (int i = 0; i < length; i++) {
+                    double power = out[from + i];
+                    out[from + i] = outOfRange(power) ? pow(values[i], n) : 1 / power;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package AlgDat.Graphs;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size bit set that may be updated by many threads at once.
+ */
+
+class AtomicBitSet {
+
+    private final AtomicLongArray words;
+
+    AtomicBitSet(int size){
+        words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    boolean get(int i){
+        return (words.get(i >>> 6) & 1L << i) != 0;
+    }
+
+    /**
+     * @return True if this call set the bit, false if it was set already.
+     */
+
+    boolean set(int i){
+        int word = i >>> 6;
+        long mask = 1L << i;
+        long old;
+        do {
+            old = words.get(word);
+            if((old & mask) != 0) return false;
+        } while (!words.compareAndSet(word, old, old | mask));
+        return true;
+    }
+
+    int wordCount(){
+        return words.length();
+    }
+
+    /**
+     * @return Bits 64 * i .. 64 * i + 63, the lowest first.
+     */
+
+    long word(int i){
+        return words.get(i);
+    }
+
+    void clear(int fromWord, int toWord){
+        for (int i = fromWord; i < toWord; i++) words.set(i, 0);
+    }
+}
@@ -0,0 +1,149 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direction optimizing breadth first search (Beamer et al.) over an IntGraph, from one or many sources.
+ * <p>
+ * While the frontier is small, each step goes top-down: the frontier's edges are followed, and unvisited
+ * targets are claimed in an atomic bitset. Once the frontier's edges outnumber those left unexplored by
+ * a factor of ALPHA, steps go bottom-up instead: every unvisited vertex looks for a parent among its
+ * incoming edges in the transposed graph, with the frontier as a bitset, and stops at the first one found.
+ * When the frontier shrinks below a BETA'th of the vertices, steps go top-down again.
+ * <p>
+ * Top-down steps keep the frontier as a list of vertices rather than a bitset, as the long thin frontiers
+ * of road networks would otherwise cost a scan of the whole bitset per step. The transposed graph is made
+ * once, so a search object should be kept for repeated queries.
+ */
+
+public class BreadthFirstSearch {
+
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    private static final int GRAIN = 256;       // frontier vertices per task top-down
+    private static final int WORD_GRAIN = 64;   // bitset words per task bottom-up
+
+    private final IntGraph graph;
+    private final IntGraph reverse;
+    private final ForkJoinPool pool;
+
+    public BreadthFirstSearch(IntGraph graph){
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    public BreadthFirstSearch(IntGraph graph, ForkJoinPool pool){
+        this.graph = graph;
+        this.reverse = graph.transposed();
+        this.pool = pool;
+    }
+
+    /**
+     * @param sources Vertices at distance 0. Duplicates are ignored.
+     * @return Distances from the nearest source, and predecessors on the shortest paths.
+     */
+
+    public ShortestHops from(int... sources){
+        int n = graph.size();
+        int[] distance = new int[n];
+        int[] predecessor = new int[n];
+        Arrays.fill(distance, -1);
+        Arrays.fill(predecessor, -1);
+
+        AtomicBitSet visited = new AtomicBitSet(n);
+        AtomicBitSet frontierBits = null; // made on the first bottom-up step
+        IntList frontier = new IntList();
+        long frontierEdges = 0;
+        for (int source : sources) {
+            if(visited.set(source)){
+                distance[source] = 0;
+                frontier.add(source);
+                frontierEdges += graph.degree(source);
+            }
+        }
+        long unexploredEdges = graph.edgeCount() - frontierEdges;
+
+        boolean bottomUp = false;
+        for (int level = 1; frontier.size > 0; level++) {
+            if(!bottomUp && frontierEdges > unexploredEdges / ALPHA) bottomUp = true;
+            else if(bottomUp && frontier.size < n / BETA) bottomUp = false;
+
+            IntList next = new IntList();
+            AtomicLong nextEdges = new AtomicLong();
+            if(bottomUp){
+                if(frontierBits == null) frontierBits = new AtomicBitSet(n);
+                bottomUpStep(frontier, frontierBits, visited, distance, predecessor, level, next, nextEdges);
+            } else {
+                topDownStep(frontier, visited, distance, predecessor, level, next, nextEdges);
+            }
+
+            frontier = next;
+            frontierEdges = nextEdges.get();
+            unexploredEdges -= frontierEdges;
+        }
+        return new ShortestHops(distance, predecessor);
+    }
+
+    private void topDownStep(IntList frontier, AtomicBitSet visited, int[] distance, int[] predecessor, int level
+            , IntList next, AtomicLong nextEdges){
+
+        int[] vertices = frontier.values;
+        Parallel.forRange(pool, 0, frontier.size, GRAIN, (from, to) -> {
+            IntList found = new IntList();
+            long edges = 0;
+            for (int i = from; i < to; i++) {
+                int v = vertices[i];
+                for (int edge = graph.firstEdge(v); edge < graph.endEdge(v); edge++) {
+                    int w = graph.target(edge);
+                    if(!visited.get(w) && visited.set(w)){
+                        distance[w] = level;
+                        predecessor[w] = v;
+                        found.add(w);
+                        edges += graph.degree(w);
+                    }
+                }
+            }
+            next.addAll(found);
+            nextEdges.addAndGet(edges);
+        });
+    }
+
+    private void bottomUpStep(IntList frontier, AtomicBitSet frontierBits, AtomicBitSet visited
+            , int[] distance, int[] predecessor, int level, IntList next, AtomicLong nextEdges){
+
+        int[] vertices = frontier.values;
+        Parallel.forRange(pool, 0, frontierBits.wordCount(), WORD_GRAIN * 16, frontierBits::clear);
+        Parallel.forRange(pool, 0, frontier.size, GRAIN * 16, (from, to) -> {
+            for (int i = from; i < to; i++) frontierBits.set(vertices[i]);
+        });
+
+        int n = graph.size();
+        Parallel.forRange(pool, 0, visited.wordCount(), WORD_GRAIN, (fromWord, toWord) -> {
+            IntList found = new IntList();
+            long edges = 0;
+            for (int word = fromWord; word < toWord; word++) {
+                // the vertices of the word still unvisited, ignoring bits past the last vertex
+                long unvisited = ~visited.word(word);
+                if(word == visited.wordCount() - 1 && (n & 63) != 0) unvisited &= (1L << n) - 1;
+
+                for (; unvisited != 0; unvisited &= unvisited - 1) {
+                    int v = word << 6 | Long.numberOfTrailingZeros(unvisited);
+                    for (int edge = reverse.firstEdge(v); edge < reverse.endEdge(v); edge++) {
+                        int u = reverse.target(edge);
+                        if(frontierBits.get(u)){
+                            visited.set(v);
+                            distance[v] = level;
+                            predecessor[v] = u;
+                            found.add(v);
+                            edges += graph.degree(v);
+                            break;
+                        }
+                    }
+                }
+            }
+            next.addAll(found);
+            nextEdges.addAndGet(edges);
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package AlgDat.Graphs;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Strongly connected components of an IntGraph, as the component number of every vertex.
+ * The vertices of each component are grouped lazily, the first time they are asked for.
+ */
+
+public class Components {
+
+    private final int[] componentOf;
+    private final int count;
+
+    private int[] offsets;
+    private int[] members;
+
+    Components(int[] componentOf, int count){
+        this.componentOf = componentOf;
+        this.count = count;
+    }
+
+    public int count(){
+        return count;
+    }
+
+    public int componentOf(int v){
+        return componentOf[v];
+    }
+
+    public boolean sameComponent(int u, int v){
+        return componentOf[u] == componentOf[v];
+    }
+
+    /**
+     * @return The component number of every vertex. The array is shared, and must not be modified.
+     */
+
+    public int[] componentIds(){
+        return componentOf;
+    }
+
+    public int size(int component){
+        group();
+        return offsets[component + 1] - offsets[component];
+    }
+
+    public int[] vertices(int component){
+        group();
+        return Arrays.copyOfRange(members, offsets[component], offsets[component + 1]);
+    }
+
+    /**
+     * @return Every component with the vertices it consists of, in order of component number.
+     */
+
+    public List<int[]> toList(){
+        return new AbstractList<>() {
+            @Override
+            public int[] get(int component) {
+                return vertices(component);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Checks if both divide the vertices the same way, no matter how the components are numbered.
+     */
+
+    public boolean samePartition(Components that){
+        if(count != that.count || componentOf.length != that.componentOf.length) return false;
+
+        int[] mapping = new int[count];
+        Arrays.fill(mapping, -1);
+        for (int v = 0; v < componentOf.length; v++) {
+            int mine = componentOf[v];
+            if(mapping[mine] == -1) mapping[mine] = that.componentOf[v];
+            else if(mapping[mine] != that.componentOf[v]) return false;
+        }
+        return true;
+    }
+
+    // counting sort of the vertices by component
+    private synchronized void group(){
+        if(members != null) return;
+
+        int[] offsets = new int[count + 1];
+        for (int component : componentOf) offsets[component + 1]++;
+        for (int c = 0; c < count; c++) offsets[c + 1] += offsets[c];
+
+        int[] next = Arrays.copyOf(offsets, count);
+        int[] members = new int[componentOf.length];
+        for (int v = 0; v < componentOf.length; v++) members[next[componentOf[v]]++] = v;
+
+        this.offsets = offsets;
+        this.members = members;
+    }
+}
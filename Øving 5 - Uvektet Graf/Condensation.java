@@ -0,0 +1,83 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+
+/**
+ * The strongly connected components of a graph, and the DAG with an edge between two components
+ * wherever the graph has one between their vertices. Components are numbered as by TarjanSCC, so
+ * every edge of the DAG leads to a lower number, and counting down is a topological order.
+ */
+
+public class Condensation {
+
+    private final Components components;
+    private final IntGraph dag;
+
+    private Condensation(Components components, IntGraph dag){
+        this.components = components;
+        this.dag = dag;
+    }
+
+    public static Condensation of(IntGraph graph){
+        Components components = TarjanSCC.find(graph);
+
+        int[] sources = new int[graph.edgeCount()];
+        int[] targets = new int[graph.edgeCount()];
+        int count = 0;
+        for (int v = 0; v < graph.size(); v++) {
+            int from = components.componentOf(v);
+            for (int edge = graph.firstEdge(v); edge < graph.endEdge(v); edge++) {
+                int to = components.componentOf(graph.target(edge));
+                if(from != to){
+                    sources[count] = from;
+                    targets[count++] = to;
+                }
+            }
+        }
+        return new Condensation(components, withoutDuplicates(IntGraph.fromEdges(components.count(), sources, targets, count)));
+    }
+
+    // sorts the targets of each vertex and keeps one of each
+    private static IntGraph withoutDuplicates(IntGraph graph){
+        int[] offsets = new int[graph.size() + 1];
+        int[] targets = new int[graph.edgeCount()];
+        int count = 0;
+        for (int v = 0; v < graph.size(); v++) {
+            int start = count;
+            for (int edge = graph.firstEdge(v); edge < graph.endEdge(v); edge++) targets[count++] = graph.target(edge);
+            Arrays.sort(targets, start, count);
+
+            int unique = start;
+            for (int i = start; i < count; i++) {
+                if(i == start || targets[i] != targets[unique - 1]) targets[unique++] = targets[i];
+            }
+            count = unique;
+            offsets[v + 1] = count;
+        }
+        return new IntGraph(offsets, Arrays.copyOf(targets, count));
+    }
+
+    public Components components(){
+        return components;
+    }
+
+    /**
+     * @return The component number of every vertex. The array is shared, and must not be modified.
+     */
+
+    public int[] componentIds(){
+        return components.componentIds();
+    }
+
+    public int componentOf(int v){
+        return components.componentOf(v);
+    }
+
+    /**
+     * @return Graph over the component numbers, with each edge between two components once.
+     */
+
+    public IntGraph dag(){
+        return dag;
+    }
+}
@@ -0,0 +1,42 @@
+package AlgDat.Graphs;
+
+/**
+ * Edges held in two primitive arrays, edge i going from source(i) to target(i), as read by EdgeListReader.
+ */
+
+public class EdgeList {
+
+    private final int vertexCount;
+    private final int[] sources;
+    private final int[] targets;
+
+    EdgeList(int vertexCount, int[] sources, int[] targets){
+        this.vertexCount = vertexCount;
+        this.sources = sources;
+        this.targets = targets;
+    }
+
+    /**
+     * @return One more than the highest vertex, or the count given in the header if that is higher.
+     */
+
+    public int vertexCount(){
+        return vertexCount;
+    }
+
+    public int edgeCount(){
+        return sources.length;
+    }
+
+    public int source(int edge){
+        return sources[edge];
+    }
+
+    public int target(int edge){
+        return targets[edge];
+    }
+
+    public IntGraph toIntGraph(){
+        return IntGraph.fromEdges(vertexCount, sources, targets, sources.length);
+    }
+}
@@ -0,0 +1,187 @@
+package AlgDat.Graphs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reads edge list files, one edge per line as two non-negative integers separated by spaces or tabs.
+ * Anything after the second integer on a line is ignored, and so are blank lines and lines starting
+ * with # or %. Optionally the first line is a header holding the vertex and edge counts, as in the
+ * course's graph files.
+ * <p>
+ * The file is memory mapped and tokenized byte by byte, straight into int arrays. With a pool,
+ * the file is cut into byte ranges at line breaks, and the ranges are parsed in parallel.
+ */
+
+public class EdgeListReader {
+
+    private static final long SEQUENTIAL_CHUNK = 1 << 30;
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 1 << 28;
+
+    private EdgeListReader(){}
+
+    public static EdgeList read(Path file, boolean header) throws IOException {
+        return read(file, header, null);
+    }
+
+    /**
+     * @param header Whether the first line holds the vertex and edge count rather than an edge.
+     * @param pool Pool to parse on, or null to parse on the calling thread.
+     */
+
+    public static EdgeList read(Path file, boolean header, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            int headerVertices = 0;
+            if(header){
+                Tokenizer tokenizer = new Tokenizer(channel, 0, size);
+                if(tokenizer.nextLine(Integer.MAX_VALUE)){
+                    headerVertices = tokenizer.nextInt();
+                    tokenizer.nextInt();
+                    tokenizer.skipLine();
+                }
+                start = tokenizer.offset();
+            }
+
+            long chunkSize = pool == null ? SEQUENTIAL_CHUNK
+                    : Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, (size - start) / (4L * pool.getParallelism()) + 1));
+            int chunkCount = (int) Math.max(1, (size - start + chunkSize - 1) / chunkSize);
+            Chunk[] chunks = new Chunk[chunkCount];
+            long from = start;
+            Parallel.Range parse = (first, end) -> {
+                for (int i = first; i < end; i++) {
+                    try {
+                        chunks[i] = Chunk.parse(channel, from + i * chunkSize, Math.min(size, from + (i + 1) * chunkSize), size);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            try {
+                if(pool == null) parse.accept(0, chunkCount);
+                else Parallel.forRange(pool, 0, chunkCount, 1, parse);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int edges = 0;
+            int vertices = headerVertices;
+            for (Chunk chunk : chunks) {
+                if(edges + (long) chunk.sources.size > Integer.MAX_VALUE) throw new IOException("More than " + Integer.MAX_VALUE + " edges");
+                edges += chunk.sources.size;
+                vertices = Math.max(vertices, chunk.highestVertex + 1);
+            }
+            int[] sources = new int[edges];
+            int[] targets = new int[edges];
+            int at = 0;
+            for (Chunk chunk : chunks) {
+                System.arraycopy(chunk.sources.values, 0, sources, at, chunk.sources.size);
+                System.arraycopy(chunk.targets.values, 0, targets, at, chunk.targets.size);
+                at += chunk.sources.size;
+            }
+            return new EdgeList(vertices, sources, targets);
+        }
+    }
+
+    /**
+     * The edges on the lines starting within a byte range.
+     */
+
+    private static final class Chunk {
+
+        private final IntList sources = new IntList();
+        private final IntList targets = new IntList();
+        private int highestVertex = -1;
+
+        static Chunk parse(FileChannel channel, long start, long end, long size) throws IOException {
+            Chunk chunk = new Chunk();
+            if(start >= end) return chunk;
+
+            // a range starts at the first line starting within it, so it begins by finishing the line before
+            Tokenizer tokenizer = new Tokenizer(channel, start == 0 ? 0 : start - 1, size);
+            if(start > 0) tokenizer.skipLine();
+
+            int limit = (int) (end - tokenizer.base);
+            while (tokenizer.nextLine(limit)){
+                int source = tokenizer.nextInt();
+                int target = tokenizer.nextInt();
+                tokenizer.skipLine();
+                chunk.sources.add(source);
+                chunk.targets.add(target);
+                chunk.highestVertex = Math.max(chunk.highestVertex, Math.max(source, target));
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Reads integers from a mapped region of at most 2 GB, starting at base in the file.
+     */
+
+    private static final class Tokenizer {
+
+        private final MappedByteBuffer buffer;
+        private final long base;
+        private final int length;
+        private int position;
+
+        Tokenizer(FileChannel channel, long base, long size) throws IOException {
+            this.base = base;
+            this.length = (int) Math.min(size - base, Integer.MAX_VALUE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+        }
+
+        long offset(){
+            return base + position;
+        }
+
+        /**
+         * Moves to the next line with content, skipping blank and comment lines. Must be called at the start
+         * of a line, and a line belongs to the range its first byte is in, even if it is indented past limit.
+         * @return False if there is none starting before limit.
+         */
+
+        boolean nextLine(int limit){
+            int lineStart = position;
+            while (position < length){
+                byte b = buffer.get(position);
+                if(b == '\n') lineStart = ++position;
+                else if(b == ' ' || b == '\t' || b == '\r') position++;
+                else if(b == '#' || b == '%') {
+                    skipLine();
+                    lineStart = position;
+                }
+                else break;
+            }
+            return position < length && lineStart < limit;
+        }
+
+        int nextInt() throws IOException {
+            while (position < length && (buffer.get(position) == ' ' || buffer.get(position) == '\t')) position++;
+            if(position == length || !isDigit(buffer.get(position)))
+                throw new IOException("Expected a non-negative integer at byte " + offset());
+
+            long value = 0;
+            while (position < length && isDigit(buffer.get(position))){
+                value = 10 * value + (buffer.get(position++) - '0');
+                if(value > Integer.MAX_VALUE) throw new IOException("Integer too large at byte " + offset());
+            }
+            return (int) value;
+        }
+
+        void skipLine(){
+            while (position < length && buffer.get(position++) != '\n');
+        }
+
+        private static boolean isDigit(byte b){
+            return b >= '0' && b <= '9';
+        }
+    }
+}
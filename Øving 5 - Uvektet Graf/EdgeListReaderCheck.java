@@ -0,0 +1,78 @@
+package AlgDat.Graphs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that EdgeListReader reads every edge once when lines cross the byte ranges parsed in parallel. The file is
+ * a little over 2 MB, so a pool of 4 cuts it at every MB, and the lines around the cuts are indented, blank or
+ * comments. Run as a program, it throws an AssertionError if an edge is lost or read twice.
+ */
+
+class EdgeListReaderCheck {
+
+    private static final int MB = 1 << 20;
+
+    public static void main(String[] args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int expected = fillTo(out, MB - 1);
+        // the leading spaces cross the cut, so the line starts in the first range and its digits in the second
+        write(out, "   3 4\n");
+        expected++;
+        expected += fillTo(out, 2 * MB - 3);
+        // a comment ending on the cut, a blank line on it, and a line starting right after, indented with a tab
+        write(out, "#\n\n\t5 6\n");
+        expected++;
+        expected += fillTo(out, 2 * MB + 4096);
+
+        Path file = Files.createTempFile("edges", ".txt");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Files.write(file, out.toByteArray());
+            EdgeList sequential = EdgeListReader.read(file, false);
+            EdgeList parallel = EdgeListReader.read(file, false, pool);
+
+            check(sequential.edgeCount() == expected, "sequential read " + sequential.edgeCount() + " of " + expected + " edges");
+            check(parallel.edgeCount() == expected, "parallel read " + parallel.edgeCount() + " of " + expected + " edges");
+            for (int edge = 0; edge < expected; edge++) {
+                check(sequential.source(edge) == parallel.source(edge) && sequential.target(edge) == parallel.target(edge),
+                        "edge " + edge + " differs between the sequential and parallel read");
+            }
+            check(contains(parallel, 3, 4) && contains(parallel, 5, 6), "the edges at the cuts are missing");
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+        System.out.println("EdgeListReader read all " + expected + " edges across the range boundaries.");
+    }
+
+    // writes edges, and a comment taking up what is left, until the output is offset bytes long
+    private static int fillTo(ByteArrayOutputStream out, int offset){
+        int edges = 0;
+        while (offset - out.size() >= 6) {
+            write(out, "0 1\n");
+            edges++;
+        }
+        if(out.size() < offset) write(out, "#" + " ".repeat(offset - out.size() - 2) + "\n");
+        return edges;
+    }
+
+    private static void write(ByteArrayOutputStream out, String text){
+        out.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static boolean contains(EdgeList edges, int source, int target){
+        for (int edge = 0; edge < edges.edgeCount(); edge++) {
+            if(edges.source(edge) == source && edges.target(edge) == target) return true;
+        }
+        return false;
+    }
+
+    private static void check(boolean condition, String message){
+        if(!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,123 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from an edge, as the pair of its vertex indices, to an int, with linear probing and
+ * removal by shifting entries back rather than by leaving tombstones. Keys and values are plain long and int
+ * arrays, so edges are looked up without boxing or hashing objects.
+ */
+
+final class EdgeTable {
+
+    private static final long EMPTY = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    EdgeTable(int expectedSize){
+        int capacity = Integer.highestOneBit(Math.max(16, 2 * expectedSize - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    static long key(int from, int to){
+        return (long) from << 32 | to;
+    }
+
+    int size(){
+        return size;
+    }
+
+    /**
+     * @return The value of the edge, or -1 if it is not in the table.
+     */
+
+    int get(int from, int to){
+        long key = key(from, to);
+        for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) return values[slot];
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the edge with the value, unless it is in the table already.
+     * @return Whether the edge was added.
+     */
+
+    boolean add(int from, int to, int value){
+        long key = key(from, to);
+        int slot = slot(key);
+        for (; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) return false;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if(++size > keys.length / 2) grow();
+        return true;
+    }
+
+    /**
+     * Replaces the value of an edge in the table.
+     */
+
+    void set(int from, int to, int value){
+        long key = key(from, to);
+        int slot = slot(key);
+        while (keys[slot] != key) slot = (slot + 1) & mask;
+        values[slot] = value;
+    }
+
+    /**
+     * @return The value the edge had, or -1 if it was not in the table.
+     */
+
+    int remove(int from, int to){
+        long key = key(from, to);
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if(keys[slot] == EMPTY) return -1;
+            slot = (slot + 1) & mask;
+        }
+        int value = values[slot];
+        size--;
+
+        // later entries of the probe sequence move back into the hole, unless it lies before their home slot
+        for (int next = (slot + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if(((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        keys[slot] = EMPTY;
+        return value;
+    }
+
+    private int slot(long key){
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+
+    private void grow(){
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new int[keys.length];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] == EMPTY) continue;
+            int slot = slot(oldKeys[i]);
+            while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
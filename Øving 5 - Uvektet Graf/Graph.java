@@ -1,20 +1,24 @@
 package AlgDat.Graphs;
 
 import java.util.*;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Class supports mapping of nodes, and methods to establish edges between them.
- * Graph may be traversed by deepFirstSearching, and consequently supports Kosaraju's algorithm
- * for tracing the strongly connected components.
+ * Graph may be traversed by deepFirstSearching, and the strongly connected components are traced
+ * by numbering the nodes and running Tarjan's algorithm on the resulting IntGraph.
+ * InternedGraph keeps the graph by dense indices from the start, for IDs that are costly to hash.
  */
 
 public class Graph<T> {
 
     private final HashMap<T, Node<T>> nodes;
+    private IncrementalSCC<T> components; // null unless trackComponents has been called
+    private List<Node<T>> indexed;        // the nodes by their index, null if the graph changed since it was numbered
+    private NumberedGraph<T> numbered;
 
     public Graph(int expectedSize){
         nodes = new HashMap<>(expectedSize * 2);
@@ -27,41 +31,152 @@ public class Graph<T> {
     public boolean addNode(T ID){
         if(nodes.containsKey(ID))
             return false;
-        nodes.put(ID, new Node<>(ID));
+        nodeOf(ID);
         return true;
     }
 
     public boolean addEdge(T startID, T endID){
         if(startID.equals(endID)) return false;
-        Node<T> headNode = nodes.get(startID);
-        Node<T> tailNode = nodes.get(endID);
+        Node<T> tailNode = nodeOf(endID);
+        Node<T> headNode = nodeOf(startID);
+        return connect(headNode, tailNode);
+    }
+
+    /**
+     * Adds a batch of edges, skipping loops and edges already present or repeated within the batch.
+     * The edges are sorted by their start node, so each node makes room for all of its new edges at once.
+     * @return Number of edges added.
+     */
 
-        if(tailNode == null){
-            tailNode = new Node<>(endID);
-            nodes.put(endID, tailNode);
+    public int addEdges(Collection<Tuple<T, T>> edges){
+        List<Node<T>> heads = new ArrayList<>(edges.size());
+        List<Node<T>> tails = new ArrayList<>(edges.size());
+        for (Tuple<T, T> edge : edges) {
+            if(edge.getA().equals(edge.getB())) continue;
+            tails.add(nodeOf(edge.getB()));
+            heads.add(nodeOf(edge.getA()));
         }
 
-        if(headNode == null){
-            headNode = new Node<>(startID);
-            nodes.put(startID, headNode);
+        // sort keys are the identity hash of the start node, and the position of the edge in the low half
+        long[] order = new long[heads.size()];
+        for (int i = 0; i < order.length; i++) order[i] = (long) System.identityHashCode(heads.get(i)) << 32 | i;
+        if(order.length > 1 << 13) Arrays.parallelSort(order);
+        else Arrays.sort(order);
+
+        int added = 0;
+        for (int i = 0; i < order.length;) {
+            Node<T> head = heads.get((int) order[i]);
+            int end = i + 1;
+            while (end < order.length && heads.get((int) order[end]) == head) end++;
+
+            head.ensureCapacity(end - i);
+            for (; i < end; i++) {
+                if(connect(head, tails.get((int) order[i]))) added++;
+            }
         }
-        return headNode.addConnection(tailNode);
+        return added;
     }
 
     public boolean removeNode(T ID){
-        return nodes.remove(ID, nodes.get(ID));
+        Node<T> node = nodes.remove(ID);
+        if(node == null) return false;
+        // other nodes may still point to it, and such edges are left out when numbering
+        node.index = -1;
+        changed();
+        if(components != null){
+            // the incoming edges are known, so no edges are left pointing to it
+            for (Node<T> source : node.incoming) source.removeConnection(node);
+            for (Node<T> target : node) if(target.incoming != null) target.incoming.remove(node);
+            components.nodeRemoved(node);
+        }
+        return true;
     }
 
     public boolean removeEdge(T startID, T endID){
         Node<T> headNode = nodes.get(startID);
         Node<T> tailNode = nodes.get(endID);
 
-        if(headNode != null && tailNode != null){
-            return headNode.removeConnection(tailNode);
+        if(headNode != null && tailNode != null && headNode.removeConnection(tailNode)){
+            changed();
+            if(components != null){
+                tailNode.incoming.remove(headNode);
+                components.edgeRemoved(headNode, tailNode);
+            }
+            return true;
         }
         return false;
     }
 
+    // the node with the ID, added if there is none
+    private Node<T> nodeOf(T ID){
+        Node<T> node = nodes.get(ID);
+        if(node == null){
+            node = new Node<>(ID);
+            nodes.put(ID, node);
+            changed();
+            if(components != null){
+                node.incoming = new NodeSet<>(0);
+                components.nodeAdded(node);
+            }
+        }
+        return node;
+    }
+
+    private boolean connect(Node<T> headNode, Node<T> tailNode){
+        if(!headNode.addConnection(tailNode)) return false;
+        changed();
+        if(components != null){
+            tailNode.incoming.add(headNode);
+            components.edgeAdded(headNode, tailNode);
+        }
+        return true;
+    }
+
+    /**
+     * Starts keeping the strongly connected components up to date through every later change, see
+     * IncrementalSCC. An edge that closes a cycle merges the components on it, and removing an edge
+     * only recomputes the component it was in.
+     */
+
+    public void trackComponents(){
+        if(components != null) return;
+        IntGraph graph = numbered().graph();
+        for (Node<T> node : indexed) node.incoming = new NodeSet<>(0);
+        for (Node<T> node : indexed) {
+            for (Node<T> target : node) if(target.index >= 0) target.incoming.add(node);
+        }
+        components = new IncrementalSCC<>(indexed, graph.components());
+    }
+
+    /**
+     * @return Number of the node's component, which stays the same until the component is merged or split,
+     * or -1 if there is no such node. Requires trackComponents.
+     */
+
+    public int componentOf(T ID){
+        if(components == null) throw new IllegalStateException("Components are not tracked, call trackComponents first");
+        Node<T> node = nodes.get(ID);
+        return node == null ? -1 : node.component;
+    }
+
+    public boolean sameComponent(T firstID, T secondID){
+        int component = componentOf(firstID);
+        return component >= 0 && component == componentOf(secondID);
+    }
+
+    /**
+     * @return Number of strongly connected components. Requires trackComponents.
+     */
+
+    public int componentCount(){
+        if(components == null) throw new IllegalStateException("Components are not tracked, call trackComponents first");
+        return components.componentCount();
+    }
+
+    void forEachNode(Consumer<Node<T>> action){
+        nodes.values().forEach(action);
+    }
+
     public Graph<T> transposed(){
         Graph<T>graph = new Graph<>(size());
 
@@ -75,107 +190,203 @@ public class Graph<T> {
     }
 
     /**
-     * Method uses Kosaraju's algorithm to find the strongly connected components
-     * within this graph.
-     * @return List of every component, with their corresponding node id.
+     * Method numbers the nodes, and finds the strongly connected components of the numbered
+     * graph with the iterative TarjanSCC, so deep graphs do not overflow the stack.
+     * @return List of every component, with their corresponding node id. Edges between
+     * components only lead to later components in the list.
      */
 
     public List<String> stronglyConnectedComponents(){
-        Deque<Node<T>> stack = new LinkedBlockingDeque<>();
-        HashMap<T, Boolean> traversed = new HashMap<>(nodes.size() * 2);
+        return numbered().stronglyConnectedComponents();
+    }
 
-        for (Node<T> value : nodes.values()) {
-            deepFirstSearch(value
-                    , nodeIf -> traversed.get(nodeIf.ID) == null
-                    , nodeOnce -> {}
-                    , nodeEach -> traversed.put(nodeEach.ID, true)
-                    , stack::push);
+    /**
+     * Like stronglyConnectedComponents, but finds the components on the threads of the pool
+     * with ParallelSCC. The components are the same, but listed in no particular order.
+     */
+
+    public List<String> stronglyConnectedComponents(ForkJoinPool pool){
+        return numbered().stronglyConnectedComponents(pool);
+    }
+
+    /**
+     * Method finds the fewest edges needed to reach each node from the nearest of the sources,
+     * with a parallel BreadthFirstSearch.
+     * @return Map from the ID of every reachable node to its distance. Sources not in the graph are ignored.
+     */
+
+    public Map<T, Integer> hopDistances(Collection<T> sources){
+        NumberedGraph<T> graph = numbered();
+        return graph.hopDistances(indices(sources));
+    }
+
+    /**
+     * @return IDs of the nodes on a path with the fewest edges from start to end, both included.
+     * Empty if there is no such path.
+     */
+
+    public List<T> shortestPath(T startID, T endID){
+        Node<T> end = nodes.get(endID);
+        if(end == null) return Collections.emptyList();
+
+        NumberedGraph<T> graph = numbered();
+        return graph.shortestPath(indices(List.of(startID)), end.index);
+    }
+
+    // indices of the nodes with the IDs, as numbered last
+    private int[] indices(Collection<T> IDs){
+        return IDs.stream()
+                .map(nodes::get)
+                .filter(Objects::nonNull)
+                .mapToInt(node -> node.index)
+                .toArray();
+    }
+
+    /**
+     * Numbers the nodes in the order the graph holds them, unless nothing changed since they were last numbered.
+     * The numbered graph is kept until the next change, so queries in between share it, and its search.
+     */
+
+    NumberedGraph<T> numbered(){
+        if(numbered == null){
+            indexed = new ArrayList<>(nodes.values());
+            List<Node<T>> byIndex = indexed;
+            numbered = new NumberedGraph<>(numbered(byIndex), v -> byIndex.get(v).ID);
         }
+        return numbered;
+    }
+
+    private void changed(){
+        indexed = null;
+        numbered = null;
+    }
 
-        LinkedList<StringBuilder> scc = new LinkedList<>();
-        Graph<T> transposedGraph = transposed();
+    // numbers the nodes in list order, and converts the graph to an IntGraph of the numbers
+    private IntGraph numbered(List<Node<T>> indexed){
+        for (int i = 0; i < indexed.size(); i++) indexed.get(i).index = i;
 
-        while (!stack.isEmpty()){
-            Node<T> value = stack.pop();
-            deepFirstSearch(transposedGraph.nodes.get(value.ID)
-                    , nodePredicate -> traversed.get(nodePredicate.ID)
-                    , nodeOnce -> scc.add(new StringBuilder())
-                    , nodeEach -> {
-                        traversed.put(nodeEach.ID, false);
-                        scc.getLast().append("<").append(nodeEach.ID).append(">");
-                    }
-                    , nodeAfter -> {});
+        IntGraph.Builder builder = new IntGraph.Builder();
+        if(!indexed.isEmpty()) builder.addVertex(indexed.size() - 1);
+        for (Node<T> value : indexed) {
+            for (Node<T> node : value) {
+                if(node.index >= 0) builder.addEdge(value.index, node.index);
+            }
         }
-        return scc.stream().map(StringBuilder::toString).collect(Collectors.toList());
+        return builder.build();
     }
 
     /**
-     * Recursive method to traverse the graph. The implementation is partially
-     * abstract for more programmer-freedom.
+     * Method to traverse the graph. The implementation is partially abstract for more
+     * programmer-freedom. The traversal keeps its own stack rather than recursing, so deep graphs
+     * do not overflow the thread stack. For traversals without boxing or per node callbacks through
+     * generic interfaces, see Traversal on the numbered IntGraph.
      *
      * @param current Node to traverse from.
      * @param traverseIf Condition for traversing the node.
-     * @param doOnce Invoked on first method call if condition i satisfied, i.e. ignores recursive calls afterwards.
-     * @param doEach Invoked on every method call if condition i satisfied, i.e. first call and each recursive call.
+     * @param doOnce Invoked for current only, if the condition is satisfied.
+     * @param doEach Invoked for every node the condition is satisfied for, current included, when it is reached.
      * @param doAfter Invoked if condition is satisfied and dfs is done with a particular node.
      */
 
-    public  void deepFirstSearch(Node<T> current
+    public void deepFirstSearch(Node<T> current
             , Predicate<Node<T>> traverseIf
             , Consumer<Node<T>> doOnce
             , Consumer<Node<T>> doEach
             , Consumer<Node<T>> doAfter){
 
-        if(traverseIf.test(current)){
-            doOnce.accept(current);
-            doEach.accept(current);
-            for (Node<T> node : current) {
-                deepFirstSearch(node, traverseIf, nop -> {}, doEach, doAfter);
+        if(!traverseIf.test(current)) return;
+        doOnce.accept(current);
+        doEach.accept(current);
+
+        // each frame is a node and the next of its connections to follow
+        List<Node<T>> stack = new ArrayList<>();
+        int[] next = new int[16];
+        stack.add(current);
+        while (!stack.isEmpty()){
+            int depth = stack.size() - 1;
+            Node<T> node = stack.get(depth);
+            if(next[depth] == node.degree()){
+                doAfter.accept(node);
+                stack.remove(depth);
+                continue;
+            }
+
+            Node<T> connection = node.connection(next[depth]++);
+            if(traverseIf.test(connection)){
+                doEach.accept(connection);
+                if(depth + 1 == next.length) next = Arrays.copyOf(next, 2 * next.length);
+                next[depth + 1] = 0;
+                stack.add(connection);
             }
-            doAfter.accept(current);
         }
     }
 
     @Override
     public String toString() {
+        if(nodes.isEmpty()) return "<Empty graph>\n";
         return nodes.values()
                 .stream()
                 .map(node -> node + "\n")
-                .reduce(String::concat)
-                .orElse("<Empty graph>\n");
+                .collect(Collectors.joining());
     }
 
     /**
-     * Implementation for nodes within this graph.
+     * Implementation for nodes within this graph. The connections are a NodeSet, so edges are
+     * added, found and removed in expected constant time at any degree.
      */
 
     static class Node<T> implements Iterable<Node<T>> {
 
         private final T ID;
-        private final LinkedList<Node<T>> connections;
+        private final NodeSet<T> connections;
+        NodeSet<T> incoming; // sources of the edges to this node, kept only while components are tracked
+        private int index; // position when the graph was last numbered, -1 once removed
+        int component = -1; // kept by IncrementalSCC, while components are tracked
+        int member;         // position among the members of its component, kept by IncrementalSCC
+        int local;          // scratch numbering for IncrementalSCC
+        int visited;        // search epoch for IncrementalSCC
 
         @SafeVarargs
         Node(T ID, Node<T>... connections){
             this.ID = ID;
-            this.connections = Arrays
-                    .stream(connections)
-                    .collect(Collectors.toCollection(LinkedList::new));
+            this.connections = new NodeSet<>(connections.length);
+            for (Node<T> connection : connections) addConnection(connection);
         }
 
         boolean addConnection(Node<T> that){
-            boolean isAbsent = connections
-                    .stream()
-                    .noneMatch(this::equals);
+            return connections.add(that);
+        }
 
-            if(isAbsent){
-                connections.add(that);
-                return true;
-            }
-            return false;
+        T getID(){
+            return ID;
         }
 
+        int degree(){
+            return connections.size();
+        }
+
+        Node<T> connection(int i){
+            return connections.get(i);
+        }
+
+        NodeSet<T> connections(){
+            return connections;
+        }
+
+        /**
+         * Makes room for extra more connections, so a batch is added without growing the array repeatedly.
+         */
+
+        void ensureCapacity(int extra){
+            connections.ensureCapacity(extra);
+        }
+
+        /**
+         * Removes the connection by moving the last one into its place, so the order of the others may change.
+         */
+
         boolean removeConnection(Node<T> that){
-            return connections.removeFirstOccurrence(that);
+            return connections.remove(that);
         }
 
         @Override
@@ -195,10 +406,7 @@ public class Graph<T> {
 
         @Override
         public String toString() {
-            return ID + " connected to: " + connections.stream()
-                    .map(node -> "<" + node.ID + ">")
-                    .reduce(String::concat)
-                    .orElse("<Nothing>");
+            return ID + " connected to: " + connections;
         }
 
         @Override
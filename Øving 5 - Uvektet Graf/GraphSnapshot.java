@@ -0,0 +1,201 @@
+package AlgDat.Graphs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file holding an IntGraph, so it may be loaded without parsing or rebuilding it.
+ * All fields are little endian ints:
+ * <pre>
+ *     +-------+---------+-------+----------+-------+-----------+-----------+-----------+
+ *     | magic | version | flags | vertices | edges | offsets   | targets   | IDs       |
+ *     |       |         |       |    n     |   m   | (n + 1)   | (m)       | (n, opt.) |
+ *     +-------+---------+-------+----------+-------+-----------+-----------+-----------+
+ * </pre>
+ * The offsets and targets are those of the compressed sparse row form, see IntGraph. With the
+ * IDS flag set, the IDs map each vertex back to the ID it had in the graph it was made from.
+ * <p>
+ * A snapshot can be mapped rather than read, in which case the graph works directly on the mapped
+ * file and loading takes the same time at any size. Each array is mapped on its own, so none of
+ * them may exceed 2 GB.
+ */
+
+public class GraphSnapshot {
+
+    public static final int MAGIC = 0x46524749; // "IGRF"
+    public static final int VERSION = 1;
+    private static final int IDS = 1;
+    private static final int HEADER_LENGTH = 5 * Integer.BYTES;
+
+    private final IntGraph graph;
+    private final IntBuffer ids; // null if the snapshot has none
+
+    private GraphSnapshot(IntGraph graph, IntBuffer ids){
+        this.graph = graph;
+        this.ids = ids;
+    }
+
+    public IntGraph graph(){
+        return graph;
+    }
+
+    public boolean hasIds(){
+        return ids != null;
+    }
+
+    /**
+     * @return The original ID of the vertex, or the vertex itself if the snapshot has no IDs.
+     */
+
+    public int id(int v){
+        return ids == null ? v : ids.get(v);
+    }
+
+    /**
+     * Rebuilds a Graph with the original IDs.
+     */
+
+    public Graph<Integer> toGraph(){
+        Graph<Integer> result = new Graph<>(graph.size());
+        for (int v = 0; v < graph.size(); v++) {
+            result.addNode(id(v));
+            for (int edge = graph.firstEdge(v); edge < graph.endEdge(v); edge++) result.addEdge(id(v), id(graph.target(edge)));
+        }
+        return result;
+    }
+
+    public static void write(IntGraph graph, Path file) throws IOException {
+        write(graph, null, file);
+    }
+
+    /**
+     * Snapshots the graph, numbering its nodes in the order it holds them and keeping their IDs.
+     */
+
+    public static void write(Graph<Integer> graph, Path file) throws IOException {
+        NumberedGraph<Integer> numbered = graph.numbered();
+        int[] ids = new int[numbered.graph().size()];
+        for (int v = 0; v < ids.length; v++) ids[v] = numbered.idOf(v);
+        write(numbered.graph(), ids, file);
+    }
+
+    /**
+     * @param ids Original ID of every vertex, or null for none.
+     */
+
+    public static void write(IntGraph graph, int[] ids, Path file) throws IOException {
+        int n = graph.size();
+        if(ids != null && ids.length != n) throw new IllegalArgumentException(ids.length + " IDs for " + n + " vertices");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(ids == null ? 0 : IDS);
+            out.putInt(n);
+            out.putInt(graph.edgeCount());
+            for (int v = 0; v <= n; v++) out.putInt(v < n ? graph.firstEdge(v) : graph.edgeCount());
+            for (int edge = 0; edge < graph.edgeCount(); edge++) out.putInt(graph.target(edge));
+            if(ids != null) for (int id : ids) out.putInt(id);
+            out.flush();
+        }
+    }
+
+    /**
+     * Maps the snapshot into memory, without reading it. The mapping stays valid after the file is closed.
+     */
+
+    public static GraphSnapshot map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int[] header = readHeader(channel);
+            int n = header[1], m = header[2];
+            long position = HEADER_LENGTH;
+            IntBuffer offsets = map(channel, position, n + 1L);
+            IntBuffer targets = map(channel, position += 4L * (n + 1), m);
+            IntBuffer ids = (header[0] & IDS) == 0 ? null : map(channel, position + 4L * m, n);
+            return new GraphSnapshot(new IntGraph(offsets, targets), ids);
+        }
+    }
+
+    /**
+     * Reads the snapshot into arrays on the heap.
+     */
+
+    public static GraphSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int[] header = readHeader(channel);
+            int n = header[1], m = header[2];
+            int[] offsets = readInts(channel, n + 1);
+            int[] targets = readInts(channel, m);
+            int[] ids = (header[0] & IDS) == 0 ? null : readInts(channel, n);
+            return new GraphSnapshot(new IntGraph(offsets, targets), ids == null ? null : IntBuffer.wrap(ids));
+        }
+    }
+
+    // returns flags, vertices and edges, after checking they agree with the file
+    private static int[] readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) if(channel.read(header) < 0) throw new IOException("Truncated snapshot header");
+        header.flip();
+
+        if(header.getInt() != MAGIC) throw new IOException("Not a graph snapshot");
+        int version = header.getInt();
+        if(version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+        int flags = header.getInt();
+        int n = header.getInt();
+        int m = header.getInt();
+
+        long expected = HEADER_LENGTH + 4L * (n + 1) + 4L * m + ((flags & IDS) != 0 ? 4L * n : 0);
+        if(n < 0 || m < 0 || channel.size() != expected)
+            throw new IOException("Corrupt snapshot: " + n + " vertices and " + m + " edges in " + channel.size() + " bytes");
+        return new int[]{flags, n, m};
+    }
+
+    private static IntBuffer map(FileChannel channel, long position, long ints) throws IOException {
+        if(4 * ints > Integer.MAX_VALUE) throw new IOException("Snapshot array of " + ints + " ints is too large to map");
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4 * ints)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+    }
+
+    private static int[] readInts(FileChannel channel, int count) throws IOException {
+        int[] values = new int[count];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (int at = 0; at < count;) {
+            buffer.clear().limit(Math.min(buffer.capacity(), 4 * (count - at)));
+            while (buffer.hasRemaining()) if(channel.read(buffer) < 0) throw new IOException("Truncated snapshot");
+            buffer.flip();
+            int chunk = buffer.remaining() / 4;
+            buffer.asIntBuffer().get(values, at, chunk);
+            at += chunk;
+        }
+        return values;
+    }
+
+    // buffers little endian ints on their way to the channel
+    private static final class Writer {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        Writer(FileChannel channel){
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            if(!buffer.hasRemaining()) flush();
+            buffer.putInt(value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
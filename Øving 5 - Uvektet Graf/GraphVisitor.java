@@ -0,0 +1,21 @@
+package AlgDat.Graphs;
+
+/**
+ * Callbacks of a Traversal, taking vertices as plain ints. Only enter must be given, so a lambda will do.
+ */
+
+public interface GraphVisitor {
+
+    /**
+     * Invoked when the traversal first reaches v.
+     * @return Whether to go on through the edges of v. If not, exit is not invoked for it either.
+     */
+
+    boolean enter(int v);
+
+    /**
+     * Invoked when the traversal is done with the edges of v.
+     */
+
+    default void exit(int v){}
+}
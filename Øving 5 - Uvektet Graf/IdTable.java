@@ -0,0 +1,271 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+
+/**
+ * Interns IDs into dense indices 0, 1, 2, ... in the order they are first seen, so that graph algorithms can keep
+ * their state in arrays indexed by vertex. The hash table is open addressing with linear probing over an int array,
+ * whose slots hold index + 1 (0 for empty), and the IDs themselves are kept by index. A removed ID keeps its index
+ * as a hole, so indices handed out stay valid, and is given a new index if it is added again.
+ * <p>
+ * IDs of any type are compared with hashCode and equals, see forObjects. forIntegers keeps Integer IDs as plain
+ * ints, so lookups compare ints without calling hashCode or equals, and no boxed IDs are kept.
+ */
+
+abstract class IdTable<T> {
+
+    private int[] slots = new int[16];
+    private int mask = 15;
+    private int indices; // indices handed out, holes included
+    private int size;    // IDs in the table
+
+    static <T> IdTable<T> forObjects(int expectedSize){
+        return new Objects<>(expectedSize);
+    }
+
+    static IdTable<Integer> forIntegers(int expectedSize){
+        return new Integers(expectedSize);
+    }
+
+    IdTable(int expectedSize){
+        grow(expectedSize);
+    }
+
+    /**
+     * @return Number of IDs in the table.
+     */
+
+    int size(){
+        return size;
+    }
+
+    /**
+     * @return Number of indices handed out, so every index is below it. Removed IDs leave holes.
+     */
+
+    int indices(){
+        return indices;
+    }
+
+    /**
+     * @return Index of the ID, which is given the next index if it is not in the table.
+     */
+
+    int intern(T ID){
+        int hash = hash(ID);
+        int slot = hash & mask;
+        for (int entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            if(matches(entry - 1, ID, hash)) return entry - 1;
+        }
+
+        int index = indices++;
+        store(index, ID, hash);
+        slots[slot] = index + 1;
+        if(++size > slots.length / 2) grow(size);
+        return index;
+    }
+
+    /**
+     * @return Index of the ID, or -1 if it is not in the table.
+     */
+
+    int indexOf(T ID){
+        int slot = find(ID);
+        return slot < 0 ? -1 : slots[slot] - 1;
+    }
+
+    /**
+     * @return The ID with the index, or null if it was removed.
+     */
+
+    abstract T idOf(int index);
+
+    /**
+     * @return Whether the ID with the index was removed, without boxing it.
+     */
+
+    abstract boolean removed(int index);
+
+    /**
+     * Removes the ID, leaving its index as a hole.
+     * @return The index the ID had, or -1 if it was not in the table.
+     */
+
+    int remove(T ID){
+        int slot = find(ID);
+        if(slot < 0) return -1;
+        int index = slots[slot] - 1;
+        clear(index);
+        size--;
+
+        // later entries of the probe sequence move back into the hole, unless it lies before their home slot
+        for (int next = (slot + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int home = hashAt(slots[next] - 1) & mask;
+            if(((next - home) & mask) >= ((next - slot) & mask)) {
+                slots[slot] = slots[next];
+                slot = next;
+            }
+        }
+        slots[slot] = 0;
+        return index;
+    }
+
+    private int find(T ID){
+        int hash = hash(ID);
+        int slot = hash & mask;
+        for (int entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            if(matches(entry - 1, ID, hash)) return slot;
+        }
+        return -1;
+    }
+
+    // makes room for twice as many slots as IDs, so the probe sequences stay short
+    private void grow(int expectedSize){
+        int capacity = Integer.highestOneBit(Math.max(16, 2 * expectedSize - 1)) << 1;
+        if(capacity <= slots.length && indices > 0) return;
+        slots = new int[capacity];
+        mask = capacity - 1;
+        ensureCapacity(Math.max(expectedSize, indices));
+        for (int index = 0; index < indices; index++) {
+            if(removed(index)) continue;
+            int slot = hashAt(index) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = index + 1;
+        }
+    }
+
+    // spreads the bits of the hash code over the high bits, which the mask keeps after the shift
+    static int mix(int hashCode){
+        int hash = hashCode * 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+
+    abstract int hash(T ID);
+
+    abstract int hashAt(int index);
+
+    // whether the ID with the index is ID, whose hash is given so it is computed once per lookup
+    abstract boolean matches(int index, T ID, int hash);
+
+    abstract void store(int index, T ID, int hash);
+
+    abstract void clear(int index);
+
+    abstract void ensureCapacity(int capacity);
+
+    private static final class Objects<T> extends IdTable<T> {
+
+        private Object[] IDs;
+        private int[] hashes; // kept, so growing does not call hashCode again
+
+        Objects(int expectedSize){
+            super(expectedSize);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        T idOf(int index){
+            return (T) IDs[index];
+        }
+
+        @Override
+        boolean removed(int index){
+            return IDs[index] == null;
+        }
+
+        @Override
+        int hash(T ID){
+            return mix(ID.hashCode());
+        }
+
+        @Override
+        int hashAt(int index){
+            return hashes[index];
+        }
+
+        @Override
+        boolean matches(int index, T ID, int hash){
+            return hashes[index] == hash && ID.equals(IDs[index]);
+        }
+
+        @Override
+        void store(int index, T ID, int hash){
+            ensureCapacity(index + 1);
+            IDs[index] = ID;
+            hashes[index] = hash;
+        }
+
+        @Override
+        void clear(int index){
+            IDs[index] = null;
+        }
+
+        @Override
+        void ensureCapacity(int capacity){
+            if(IDs == null) {
+                IDs = new Object[Math.max(16, capacity)];
+                hashes = new int[IDs.length];
+            } else if(capacity > IDs.length) {
+                IDs = Arrays.copyOf(IDs, Math.max(capacity, 2 * IDs.length));
+                hashes = Arrays.copyOf(hashes, IDs.length);
+            }
+        }
+    }
+
+    private static final class Integers extends IdTable<Integer> {
+
+        private int[] IDs;
+        private boolean[] removed;
+
+        Integers(int expectedSize){
+            super(expectedSize);
+        }
+
+        @Override
+        Integer idOf(int index){
+            return removed[index] ? null : IDs[index];
+        }
+
+        @Override
+        boolean removed(int index){
+            return removed[index];
+        }
+
+        @Override
+        int hash(Integer ID){
+            return mix(ID);
+        }
+
+        @Override
+        int hashAt(int index){
+            return mix(IDs[index]);
+        }
+
+        @Override
+        boolean matches(int index, Integer ID, int hash){
+            return IDs[index] == ID;
+        }
+
+        @Override
+        void store(int index, Integer ID, int hash){
+            ensureCapacity(index + 1);
+            IDs[index] = ID;
+        }
+
+        @Override
+        void clear(int index){
+            removed[index] = true;
+        }
+
+        @Override
+        void ensureCapacity(int capacity){
+            if(IDs == null) {
+                IDs = new int[Math.max(16, capacity)];
+                removed = new boolean[IDs.length];
+            } else if(capacity > IDs.length) {
+                IDs = Arrays.copyOf(IDs, Math.max(capacity, 2 * IDs.length));
+                removed = Arrays.copyOf(removed, IDs.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package AlgDat.Graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the strongly connected components of a Graph up to date as it changes, see Graph.trackComponents.
+ * Each node holds the ID of its component, and the components are kept in a topological order.
+ * <p>
+ * An edge from u to v in the same order as the components needs no work. Otherwise the components between
+ * them in the order are searched, forwards from v or backwards from u, whichever finishes first: the
+ * components on a path from v to u merge, and the others found move to the far side of the merged one,
+ * as in Pearce and Kelly's algorithm. The backward search uses the incoming edges the graph keeps while
+ * components are tracked.
+ * <p>
+ * Removing an edge within a component first looks for another path between its ends, and only if there
+ * is none reruns TarjanSCC on that component. If it splits, one part keeps the ID and the parts take its
+ * place in the order. Merges and splits shift the rest of the order,
+ * a single array copy.
+ */
+
+final class IncrementalSCC<T> {
+
+    private final List<List<Graph.Node<T>>> members = new ArrayList<>();
+    private final IntList free = new IntList(); // IDs of dissolved components, to be used again
+    private int[] order = new int[16];          // components in topological order
+    private int orderSize;
+    private int[] position = new int[16];       // of each component in the order
+    private int[] seen = new int[16];           // epoch a component was last searched in
+    private int[] reaches = new int[16];        // epoch a component was last found to reach the target in
+    private int epoch;
+    private int nodeEpoch;                      // epoch a node was last visited in, see Graph.Node.visited
+
+    // frames of the search: a component, and the member and edge to look at next
+    private int[] frameComponents = new int[16];
+    private int[] frameMembers = new int[16];
+    private int[] frameEdges = new int[16];
+
+    /**
+     * @param indexed The nodes, numbered by their index in the list.
+     * @param components Components of the numbered graph, as found by TarjanSCC.
+     */
+
+    IncrementalSCC(List<Graph.Node<T>> indexed, Components components){
+        for (int c = 0; c < components.count(); c++) newComponent();
+        for (int v = 0; v < indexed.size(); v++) {
+            Graph.Node<T> node = indexed.get(v);
+            addMember(components.componentOf(v), node);
+        }
+        // tarjan numbers the components in reverse topological order
+        for (int c = components.count() - 1; c >= 0; c--) append(c);
+    }
+
+    int componentCount(){
+        return orderSize;
+    }
+
+    void nodeAdded(Graph.Node<T> node){
+        addMember(newComponent(), node);
+        append(node.component);
+    }
+
+    void nodeRemoved(Graph.Node<T> node){
+        int c = node.component;
+        removeMember(node);
+        if(members.get(c).isEmpty()){
+            free.add(c);
+            replace(position[c], position[c], new IntList());
+        } else split(c);
+    }
+
+    void edgeAdded(Graph.Node<T> from, Graph.Node<T> to){
+        int cu = from.component;
+        int cv = to.component;
+        if(cu == cv || position[cu] < position[cv]) return;
+
+        // searches forwards from v and backwards from u with a doubling budget, so the work is
+        // bounded by the smaller side, as when one end is in a giant component
+        for (long budget = 64; ; budget *= 2) {
+            if(search(cv, cu, true, budget)){
+                reorder(cv, cu, cu, true);
+                return;
+            }
+            if(search(cu, cv, false, budget)){
+                reorder(cv, cu, cv, false);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reorders the region from first to last after a search from one end. Searching forwards from first, the
+     * region becomes the components not found, last merged with those found reaching it, and the other
+     * components found. Searching backwards from last, it is the mirror image of that.
+     */
+
+    private void reorder(int first, int last, int merged, boolean forward){
+        int from = position[first];
+        int to = position[last];
+        IntList before = new IntList();
+        IntList after = new IntList();
+        for (int p = from; p <= to; p++) {
+            int c = order[p];
+            if(c == merged) continue;
+            if(seen[c] != epoch) (forward ? before : after).add(c);
+            else if(reaches[c] != epoch) (forward ? after : before).add(c);
+            else merge(c, merged);
+        }
+        before.add(merged);
+        before.addAll(after);
+        replace(from, to, before);
+    }
+
+    void edgeRemoved(Graph.Node<T> from, Graph.Node<T> to){
+        if(from.component == to.component && !reachesWithin(from, to)) split(from.component);
+    }
+
+    /**
+     * Breadth first search from one node to another within their component. If the removed edge from
+     * u to v can be replaced by another path, the component stays as it is, and this is usually found
+     * close by, well before the whole component would have to be searched.
+     */
+
+    private boolean reachesWithin(Graph.Node<T> from, Graph.Node<T> to){
+        int c = from.component;
+        int mark = ++nodeEpoch;
+        List<Graph.Node<T>> queue = new ArrayList<>();
+        queue.add(from);
+        from.visited = mark;
+
+        for (int head = 0; head < queue.size(); head++) {
+            for (Graph.Node<T> next : queue.get(head)) {
+                if(next == to) return true;
+                if(next.component == c && next.visited != mark){
+                    next.visited = mark;
+                    queue.add(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Depth first search through the components from start, following edges forwards or backwards, and not
+     * going past target in the order. Marks the components found as seen, and those with a path to target
+     * as reaching it.
+     * @return False if the budget of edges ran out before the search was done.
+     */
+
+    private boolean search(int start, int target, boolean forward, long budget){
+        epoch++;
+        int depth = 0;
+        frameComponents[0] = start;
+        frameMembers[0] = 0;
+        frameEdges[0] = 0;
+        seen[start] = epoch;
+
+        while (depth >= 0){
+            if(--budget < 0) return false;
+            int c = frameComponents[depth];
+            List<Graph.Node<T>> list = members.get(c);
+
+            if(frameMembers[depth] == list.size()){
+                // the components form a DAG, so everything below c is done, and c's answer is final
+                if(--depth >= 0 && reaches[c] == epoch) reaches[frameComponents[depth]] = epoch;
+                continue;
+            }
+            Graph.Node<T> member = list.get(frameMembers[depth]);
+            NodeSet<T> edges = forward ? member.connections() : member.incoming;
+            if(frameEdges[depth] == edges.size()){
+                frameMembers[depth]++;
+                frameEdges[depth] = 0;
+                continue;
+            }
+
+            int next = edges.get(frameEdges[depth]++).component;
+            if(next < 0 || next == c || (forward ? position[next] > position[target] : position[next] < position[target])) continue;
+            if(next == target || seen[next] == epoch){
+                if(next == target || reaches[next] == epoch) reaches[c] = epoch;
+                continue;
+            }
+
+            seen[next] = epoch;
+            if(++depth == frameComponents.length){
+                frameComponents = Arrays.copyOf(frameComponents, 2 * depth);
+                frameMembers = Arrays.copyOf(frameMembers, 2 * depth);
+                frameEdges = Arrays.copyOf(frameEdges, 2 * depth);
+            }
+            frameComponents[depth] = next;
+            frameMembers[depth] = 0;
+            frameEdges[depth] = 0;
+        }
+        return true;
+    }
+
+    private void merge(int from, int into){
+        for (Graph.Node<T> node : members.get(from)) addMember(into, node);
+        members.set(from, new ArrayList<>());
+        free.add(from);
+    }
+
+    /**
+     * Finds the components within c, by TarjanSCC on the edges between its members.
+     */
+
+    private void split(int c){
+        List<Graph.Node<T>> list = members.get(c);
+        for (int i = 0; i < list.size(); i++) list.get(i).local = i;
+
+        IntGraph.Builder builder = new IntGraph.Builder().addVertex(list.size() - 1);
+        for (Graph.Node<T> node : list) {
+            for (Graph.Node<T> connection : node) {
+                if(connection.component == c) builder.addEdge(node.local, connection.local);
+            }
+        }
+        Components parts = TarjanSCC.find(builder.build());
+        if(parts.count() == 1) return;
+
+        // the part first in topological order keeps the ID
+        int[] ids = new int[parts.count()];
+        IntList reordered = new IntList();
+        for (int p = parts.count() - 1; p >= 0; p--) {
+            ids[p] = p == parts.count() - 1 ? c : newComponent();
+            reordered.add(ids[p]);
+        }
+        members.set(c, new ArrayList<>());
+        for (Graph.Node<T> node : list) addMember(ids[parts.componentOf(node.local)], node);
+        replace(position[c], position[c], reordered);
+    }
+
+    private void addMember(int c, Graph.Node<T> node){
+        List<Graph.Node<T>> list = members.get(c);
+        node.component = c;
+        node.member = list.size();
+        list.add(node);
+    }
+
+    // takes the node out of its component's members, by moving the last member into its place
+    private void removeMember(Graph.Node<T> node){
+        List<Graph.Node<T>> list = members.get(node.component);
+        Graph.Node<T> last = list.remove(list.size() - 1);
+        if(last != node){
+            last.member = node.member;
+            list.set(node.member, last);
+        }
+        node.component = -1;
+    }
+
+    private int newComponent(){
+        int c;
+        if(free.size > 0) c = free.values[--free.size];
+        else {
+            c = members.size();
+            members.add(null);
+            if(c == position.length){
+                position = Arrays.copyOf(position, 2 * c);
+                seen = Arrays.copyOf(seen, 2 * c);
+                reaches = Arrays.copyOf(reaches, 2 * c);
+            }
+        }
+        members.set(c, new ArrayList<>());
+        return c;
+    }
+
+    private void append(int c){
+        replace(orderSize, orderSize - 1, IntList.of(c));
+    }
+
+    // replaces the components at first .. last in the order by those listed, moving the ones behind
+    private void replace(int first, int last, IntList components){
+        int shift = components.size - (last - first + 1);
+        if(orderSize + shift > order.length) order = Arrays.copyOf(order, Math.max(2 * order.length, orderSize + shift));
+        System.arraycopy(order, last + 1, order, last + 1 + shift, orderSize - last - 1);
+        orderSize += shift;
+
+        System.arraycopy(components.values, 0, order, first, components.size);
+        int end = shift == 0 ? first + components.size : orderSize;
+        for (int p = first; p < end; p++) position[order[p]] = p;
+    }
+}
@@ -0,0 +1,279 @@
+package AlgDat.Graphs;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable graph over the vertices 0 .. size() - 1, stored in compressed sparse row form:
+ * the edges leaving v lead to targets[offsets[v]] .. targets[offsets[v + 1] - 1].
+ * Each edge takes 4 bytes and each vertex 4 bytes, and no IDs are boxed, so graphs with
+ * tens of millions of edges fit in a few hundred MB. The arrays may also be buffers mapped from
+ * a GraphSnapshot file, which the algorithms then read in place. Traversals are iterative, so long paths
+ * do not grow the thread stack.
+ */
+
+public class IntGraph {
+
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+
+    IntGraph(int[] offsets, int[] targets){
+        this(IntBuffer.wrap(offsets), IntBuffer.wrap(targets));
+    }
+
+    /**
+     * Graph over buffers that may live outside the heap, as when mapped by GraphSnapshot.
+     * Only absolute gets are used, so the buffers' positions do not matter.
+     */
+
+    IntGraph(IntBuffer offsets, IntBuffer targets){
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Builds a graph from an edge list, where edge i goes from sources[i] to targets[i].
+     * @param size Number of vertices, every ID must be below it.
+     */
+
+    public static IntGraph fromEdges(int size, int[] sources, int[] targets, int edgeCount){
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            if(sources[i] < 0 || sources[i] >= size || targets[i] < 0 || targets[i] >= size)
+                throw new IllegalArgumentException("Edge (" + sources[i] + "," + targets[i] + ") outside 0.." + (size - 1));
+            offsets[sources[i] + 1]++;
+        }
+        for (int v = 0; v < size; v++) offsets[v + 1] += offsets[v];
+
+        // counting sort of the edges by source, keeping their order within a source
+        int[] next = Arrays.copyOf(offsets, size);
+        int[] sorted = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) sorted[next[sources[i]]++] = targets[i];
+        return new IntGraph(offsets, sorted);
+    }
+
+    /**
+     * Converts a graph with non-negative integer IDs, each ID becoming the vertex with that number.
+     */
+
+    public static IntGraph of(Graph<Integer> graph){
+        Builder builder = new Builder();
+        graph.forEachNode(node -> {
+            builder.addVertex(node.getID());
+            for (Graph.Node<Integer> connection : node) builder.addEdge(node.getID(), connection.getID());
+        });
+        return builder.build();
+    }
+
+    public int size(){
+        return offsets.limit() - 1;
+    }
+
+    public int edgeCount(){
+        return targets.limit();
+    }
+
+    public int degree(int v){
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+
+    /**
+     * Edges leaving v are numbered firstEdge(v) .. endEdge(v) - 1, see target.
+     */
+
+    public int firstEdge(int v){
+        return offsets.get(v);
+    }
+
+    public int endEdge(int v){
+        return offsets.get(v + 1);
+    }
+
+    public int target(int edge){
+        return targets.get(edge);
+    }
+
+    public IntGraph transposed(){
+        int[] sources = new int[edgeCount()];
+        int[] targets = new int[edgeCount()];
+        for (int v = 0; v < size(); v++) Arrays.fill(sources, firstEdge(v), endEdge(v), v);
+        this.targets.get(0, targets);
+        return fromEdges(size(), targets, sources, targets.length);
+    }
+
+    /**
+     * Iterative version of Graph.deepFirstSearch, with the same callbacks.
+     *
+     * @param start Vertex to traverse from.
+     * @param traverseIf Condition for traversing the vertex.
+     * @param doOnce Invoked for start only, if the condition is satisfied.
+     * @param doEach Invoked for every vertex the condition is satisfied for, when it is first reached.
+     * @param doAfter Invoked for every vertex the condition is satisfied for, when dfs is done with it.
+     */
+
+    public void deepFirstSearch(int start
+            , IntPredicate traverseIf
+            , IntConsumer doOnce
+            , IntConsumer doEach
+            , IntConsumer doAfter){
+
+        if(!traverseIf.test(start)) return;
+        doOnce.accept(start);
+        doEach.accept(start);
+
+        // each frame is a vertex and the next of its edges to follow
+        int[] vertices = new int[16];
+        int[] edges = new int[16];
+        int depth = 0;
+        vertices[0] = start;
+        edges[0] = firstEdge(start);
+
+        while (depth >= 0){
+            int v = vertices[depth];
+            if(edges[depth] == endEdge(v)){
+                doAfter.accept(v);
+                depth--;
+                continue;
+            }
+
+            int w = target(edges[depth]++);
+            if(traverseIf.test(w)){
+                doEach.accept(w);
+                if(++depth == vertices.length){
+                    vertices = Arrays.copyOf(vertices, 2 * depth);
+                    edges = Arrays.copyOf(edges, 2 * depth);
+                }
+                vertices[depth] = w;
+                edges[depth] = firstEdge(w);
+            }
+        }
+    }
+
+    /**
+     * Method uses Kosaraju's algorithm to find the strongly connected components
+     * within this graph.
+     * @return List of every component, with the vertices it consists of.
+     */
+
+    public List<int[]> stronglyConnectedComponents(){
+        int[] finished = new int[size()];
+        GraphVisitor finishing = new GraphVisitor() {
+            int count;
+
+            @Override
+            public boolean enter(int v) {
+                return true;
+            }
+
+            @Override
+            public void exit(int v) {
+                finished[count++] = v;
+            }
+        };
+        Traversal traversal = new Traversal(this);
+        for (int v = 0; v < size(); v++) traversal.depthFirst(v, finishing);
+
+        List<int[]> scc = new ArrayList<>();
+        int[] component = new int[size()];
+        int[] componentSize = {0};
+        GraphVisitor collecting = v -> {
+            component[componentSize[0]++] = v;
+            return true;
+        };
+        Traversal transposedTraversal = new Traversal(transposed());
+
+        for (int i = size() - 1; i >= 0; i--) {
+            componentSize[0] = 0;
+            if(transposedTraversal.depthFirst(finished[i], collecting) > 0) scc.add(Arrays.copyOf(component, componentSize[0]));
+        }
+        return scc;
+    }
+
+    /**
+     * Finds the strongly connected components in one iterative pass, see TarjanSCC.
+     */
+
+    public Components components(){
+        return TarjanSCC.find(this);
+    }
+
+    /**
+     * Finds the strongly connected components on the threads of the pool, see ParallelSCC.
+     */
+
+    public Components components(ForkJoinPool pool){
+        return ParallelSCC.find(this, pool);
+    }
+
+    /**
+     * @return The strongly connected components, and the DAG between them.
+     */
+
+    public Condensation condensation(){
+        return Condensation.of(this);
+    }
+
+    /**
+     * Shortest paths counted in edges from the sources, see BreadthFirstSearch. Makes a transposed
+     * graph per call, so repeated queries should keep a BreadthFirstSearch instead.
+     */
+
+    public ShortestHops shortestHops(int... sources){
+        return new BreadthFirstSearch(this).from(sources);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int v = 0; v < size(); v++) {
+            builder.append(v).append(" connected to: ");
+            if(degree(v) == 0) builder.append("<Nothing>");
+            for (int edge = firstEdge(v); edge < endEdge(v); edge++) builder.append("<").append(target(edge)).append(">");
+            builder.append("\n");
+        }
+        return builder.length() == 0 ? "<Empty graph>\n" : builder.toString();
+    }
+
+    /**
+     * Collects edges into growable primitive arrays, and sorts them into a graph when done.
+     */
+
+    public static class Builder {
+
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private int edgeCount;
+        private int size;
+
+        /**
+         * Makes sure the vertex exists, even if no edge touches it.
+         */
+
+        public Builder addVertex(int v){
+            if(v < 0) throw new IllegalArgumentException("Vertex IDs must be non-negative: " + v);
+            size = Math.max(size, v + 1);
+            return this;
+        }
+
+        public Builder addEdge(int source, int target){
+            addVertex(source);
+            addVertex(target);
+            if(edgeCount == sources.length){
+                sources = Arrays.copyOf(sources, 2 * edgeCount);
+                targets = Arrays.copyOf(targets, 2 * edgeCount);
+            }
+            sources[edgeCount] = source;
+            targets[edgeCount++] = target;
+            return this;
+        }
+
+        public IntGraph build(){
+            return fromEdges(size, sources, targets, edgeCount);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of ints, which tasks fill locally and then append to a shared one.
+ */
+
+final class IntList {
+
+    int[] values = new int[16];
+    int size;
+
+    static IntList of(int value){
+        IntList list = new IntList();
+        list.add(value);
+        return list;
+    }
+
+    void add(int value){
+        if(size == values.length) values = Arrays.copyOf(values, 2 * size);
+        values[size++] = value;
+    }
+
+    /**
+     * Appends every value of that. When the list grows its old array is left as it was,
+     * so threads may read the part of it written before they started.
+     */
+
+    synchronized void addAll(IntList that){
+        if(size + that.size > values.length) values = Arrays.copyOf(values, Math.max(2 * values.length, size + that.size));
+        System.arraycopy(that.values, 0, values, size, that.size);
+        size += that.size;
+    }
+}
@@ -0,0 +1,244 @@
+package AlgDat.Graphs;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Graph of arbitrary IDs which interns every ID into a dense index the first time it is seen (see IdTable), and
+ * keeps everything else by index: the connections of a vertex are an int array, and the edges are found in an
+ * EdgeTable. An ID is hashed once per call, and mapped back only in the results, so graphs with String or record
+ * IDs build about as fast as graphs of Integers, which withIntegerIds keeps as plain ints.
+ * <p>
+ * It covers building the graph and the queries Graph answers through its numbered IntGraph, with the same results:
+ * the strongly connected components, hop distances and shortest paths. The queries share Graph's NumberedGraph,
+ * kept until the graph changes, and toIntGraph hands the int graph to anything else. There is no transposed,
+ * deepFirstSearch or trackComponents, as those work on Graph's nodes.
+ * <p>
+ * A removed ID leaves its index unused, and is given a new index if it is added again. Edges pointing to it are
+ * dropped the next time the graph is numbered.
+ */
+
+public class InternedGraph<T> {
+
+    private static final int[] NO_CONNECTIONS = new int[0];
+
+    private final IdTable<T> ids;
+    private final EdgeTable edges; // position of each edge among the connections of its start
+    private int[][] connections;   // null for removed vertices
+    private int[] degrees;
+    private NumberedGraph<T> numbered; // null if the graph changed since it was last numbered
+
+    public InternedGraph(int expectedSize){
+        this(IdTable.forObjects(expectedSize), expectedSize);
+    }
+
+    private InternedGraph(IdTable<T> ids, int expectedSize){
+        this.ids = ids;
+        edges = new EdgeTable(expectedSize);
+        connections = new int[Math.max(16, expectedSize)][];
+        degrees = new int[connections.length];
+    }
+
+    /**
+     * @return Graph which keeps its Integer IDs as ints, so they are neither boxed nor hashed as objects.
+     */
+
+    public static InternedGraph<Integer> withIntegerIds(int expectedSize){
+        return new InternedGraph<>(IdTable.forIntegers(expectedSize), expectedSize);
+    }
+
+    public int size(){
+        return ids.size();
+    }
+
+    public boolean addNode(T ID){
+        int before = ids.size();
+        vertexOf(ID);
+        return ids.size() != before;
+    }
+
+    public boolean addEdge(T startID, T endID){
+        if(startID.equals(endID)) return false;
+        int head = vertexOf(startID);
+        int tail = vertexOf(endID);
+        return connect(head, tail);
+    }
+
+    /**
+     * Adds a batch of edges, skipping loops and edges already present or repeated within the batch.
+     * @return Number of edges added.
+     */
+
+    public int addEdges(Collection<Tuple<T, T>> edges){
+        int added = 0;
+        for (Tuple<T, T> edge : edges) {
+            if(addEdge(edge.getA(), edge.getB())) added++;
+        }
+        return added;
+    }
+
+    public boolean removeNode(T ID){
+        int vertex = ids.remove(ID);
+        if(vertex < 0) return false;
+        for (int i = 0; i < degrees[vertex]; i++) edges.remove(vertex, connections[vertex][i]);
+        connections[vertex] = null;
+        degrees[vertex] = 0;
+        numbered = null;
+        return true;
+    }
+
+    public boolean removeEdge(T startID, T endID){
+        int head = ids.indexOf(startID);
+        int tail = ids.indexOf(endID);
+        if(head < 0 || tail < 0) return false;
+
+        int position = edges.remove(head, tail);
+        if(position < 0) return false;
+        disconnect(head, position);
+        return true;
+    }
+
+    /**
+     * @return Index of the ID in toIntGraph, or -1 if it is not in the graph.
+     */
+
+    public int indexOf(T ID){
+        return ids.indexOf(ID);
+    }
+
+    /**
+     * @return The ID with the index in toIntGraph, or null if it was removed.
+     */
+
+    public T idOf(int index){
+        return ids.idOf(index);
+    }
+
+    /**
+     * @return The graph of the indices, see indexOf. Removed IDs leave vertices without edges.
+     */
+
+    public IntGraph toIntGraph(){
+        return numbered().graph();
+    }
+
+    /**
+     * See Graph.stronglyConnectedComponents.
+     */
+
+    public List<String> stronglyConnectedComponents(){
+        return numbered().stronglyConnectedComponents();
+    }
+
+    /**
+     * See Graph.stronglyConnectedComponents(ForkJoinPool).
+     */
+
+    public List<String> stronglyConnectedComponents(ForkJoinPool pool){
+        return numbered().stronglyConnectedComponents(pool);
+    }
+
+    /**
+     * See Graph.hopDistances.
+     */
+
+    public Map<T, Integer> hopDistances(Collection<T> sources){
+        return numbered().hopDistances(indices(sources));
+    }
+
+    /**
+     * See Graph.shortestPath.
+     */
+
+    public List<T> shortestPath(T startID, T endID){
+        int end = ids.indexOf(endID);
+        if(end < 0) return Collections.emptyList();
+        return numbered().shortestPath(indices(List.of(startID)), end);
+    }
+
+    // indices of the IDs, leaving out those not in the graph
+    private int[] indices(Collection<T> IDs){
+        return IDs.stream()
+                .mapToInt(ids::indexOf)
+                .filter(index -> index >= 0)
+                .toArray();
+    }
+
+    // the index of the ID, which is added if it is not in the graph
+    private int vertexOf(T ID){
+        int vertex = ids.intern(ID);
+        if(vertex >= connections.length){
+            connections = Arrays.copyOf(connections, Math.max(vertex + 1, 2 * connections.length));
+            degrees = Arrays.copyOf(degrees, connections.length);
+        }
+        if(connections[vertex] == null){
+            connections[vertex] = NO_CONNECTIONS;
+            numbered = null;
+        }
+        return vertex;
+    }
+
+    private boolean connect(int head, int tail){
+        int degree = degrees[head];
+        if(!edges.add(head, tail, degree)) return false;
+        if(degree == connections[head].length)
+            connections[head] = Arrays.copyOf(connections[head], Math.max(4, 2 * degree));
+        connections[head][degree] = tail;
+        degrees[head] = degree + 1;
+        numbered = null;
+        return true;
+    }
+
+    // removes the connection at the position, by moving the last connection into its place
+    private void disconnect(int head, int position){
+        int last = --degrees[head];
+        if(position != last){
+            int moved = connections[head][last];
+            connections[head][position] = moved;
+            edges.set(head, moved, position);
+        }
+        numbered = null;
+    }
+
+    // the IntGraph of the connections, with edges to removed vertices dropped on the way
+    private NumberedGraph<T> numbered(){
+        if(numbered != null) return numbered;
+        int n = ids.indices();
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            for (int i = degrees[v] - 1; i >= 0; i--) {
+                int tail = connections[v][i];
+                if(ids.removed(tail)){
+                    edges.remove(v, tail);
+                    disconnect(v, i);
+                }
+            }
+            offsets[v + 1] = offsets[v] + degrees[v];
+        }
+
+        int[] targets = new int[offsets[n]];
+        for (int v = 0; v < n; v++) {
+            if(degrees[v] > 0) System.arraycopy(connections[v], 0, targets, offsets[v], degrees[v]);
+        }
+        return numbered = new NumberedGraph<>(new IntGraph(offsets, targets), ids::idOf);
+    }
+
+    @Override
+    public String toString() {
+        if(ids.size() == 0) return "<Empty graph>\n";
+        StringBuilder builder = new StringBuilder();
+        for (int v = 0; v < ids.indices(); v++) {
+            if(ids.removed(v)) continue;
+            builder.append(ids.idOf(v)).append(" connected to: ");
+            int shown = 0;
+            for (int i = 0; i < degrees[v]; i++) {
+                if(ids.removed(connections[v][i])) continue;
+                builder.append("<").append(ids.idOf(connections[v][i])).append(">");
+                shown++;
+            }
+            if(shown == 0) builder.append("<Nothing>");
+            builder.append("\n");
+        }
+        return builder.toString();
+    }
+}
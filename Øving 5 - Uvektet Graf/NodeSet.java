@@ -0,0 +1,147 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Set of nodes kept in an array, and once there are more than SCAN_LIMIT of them also in an open addressing
+ * hash table of their positions, so adding, finding and removing a node takes expected constant time at any
+ * size. Nodes are unique per ID within a graph, so they are compared by identity.
+ */
+
+final class NodeSet<T> implements Iterable<Graph.Node<T>> {
+
+    private static final int SCAN_LIMIT = 8; // nodes are found by a linear scan up to this size
+
+    private Graph.Node<T>[] nodes;
+    private int size;
+    private int[] slots; // positions + 1 in nodes, 0 for an empty slot. null while size <= SCAN_LIMIT
+
+    NodeSet(int initialCapacity){
+        nodes = newArray(Math.max(4, initialCapacity));
+    }
+
+    boolean add(Graph.Node<T> node){
+        if(indexOf(node) >= 0) return false;
+
+        ensureCapacity(1);
+        nodes[size++] = node;
+        if(slots != null) {
+            if(2 * size > slots.length) rehash(2 * slots.length);
+            else insertSlot(size - 1);
+        } else if(size > SCAN_LIMIT) {
+            rehash(4 * Integer.highestOneBit(size));
+        }
+        return true;
+    }
+
+    /**
+     * Removes the node by moving the last one into its place, so the order of the others may change.
+     */
+
+    boolean remove(Graph.Node<T> node){
+        int position = indexOf(node);
+        if(position < 0) return false;
+
+        int last = size - 1;
+        if(slots != null) {
+            deleteSlot(slotOf(position));
+            if(position != last) slots[slotOf(last)] = position + 1;
+        }
+        nodes[position] = nodes[last];
+        nodes[last] = null;
+        size--;
+        return true;
+    }
+
+    boolean contains(Graph.Node<T> node){
+        return indexOf(node) >= 0;
+    }
+
+    int size(){
+        return size;
+    }
+
+    Graph.Node<T> get(int i){
+        return nodes[i];
+    }
+
+    /**
+     * Makes room for extra more nodes, so a batch is added without growing the array repeatedly.
+     */
+
+    void ensureCapacity(int extra){
+        if(size + extra > nodes.length) nodes = Arrays.copyOf(nodes, Math.max(2 * nodes.length, size + extra));
+    }
+
+    private int indexOf(Graph.Node<T> node){
+        if(slots == null) {
+            for (int i = 0; i < size; i++) {
+                if(nodes[i] == node) return i;
+            }
+            return -1;
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash(node) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if(nodes[slots[slot] - 1] == node) return slots[slot] - 1;
+        }
+        return -1;
+    }
+
+    // slot holding the position, which must be in the table
+    private int slotOf(int position){
+        int mask = slots.length - 1;
+        int slot = hash(nodes[position]) & mask;
+        while (slots[slot] != position + 1) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void insertSlot(int position){
+        int mask = slots.length - 1;
+        int slot = hash(nodes[position]) & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = position + 1;
+    }
+
+    // empties the slot, and moves later entries of the probe sequence back so none become unreachable
+    private void deleteSlot(int hole){
+        int mask = slots.length - 1;
+        slots[hole] = 0;
+        for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int home = hash(nodes[slots[slot] - 1]) & mask;
+            if(((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                slots[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity){
+        slots = new int[capacity];
+        for (int i = 0; i < size; i++) insertSlot(i);
+    }
+
+    private static int hash(Graph.Node<?> node){
+        int h = node.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Graph.Node<T>[] newArray(int length){
+        return (Graph.Node<T>[]) new Graph.Node<?>[length];
+    }
+
+    @Override
+    public Iterator<Graph.Node<T>> iterator() {
+        return Arrays.asList(nodes).subList(0, size).iterator();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.stream(nodes, 0, size)
+                .map(node -> "<" + node.getID() + ">")
+                .reduce(String::concat)
+                .orElse("<Nothing>");
+    }
+}
@@ -0,0 +1,83 @@
+package AlgDat.Graphs;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+/**
+ * A graph as numbered for the int based algorithms: the IntGraph of the numbers, and the ID of every number.
+ * A graph keeps one until it next changes, and answers its component and path queries through it, so the
+ * BreadthFirstSearch, which transposes the graph, is only made once for all queries in between.
+ */
+
+final class NumberedGraph<T> {
+
+    private final IntGraph graph;
+    private final IntFunction<T> ids;  // null for numbers without a vertex
+    private BreadthFirstSearch search; // made by the first path query
+
+    NumberedGraph(IntGraph graph, IntFunction<T> ids){
+        this.graph = graph;
+        this.ids = ids;
+    }
+
+    IntGraph graph(){
+        return graph;
+    }
+
+    T idOf(int v){
+        return ids.apply(v);
+    }
+
+    /**
+     * @return The components in topological order, see Graph.stronglyConnectedComponents.
+     */
+
+    List<String> stronglyConnectedComponents(){
+        Components components = graph.components();
+        List<String> scc = new ArrayList<>(components.count());
+        // tarjan numbers the components in reverse topological order
+        for (int c = components.count() - 1; c >= 0; c--) describe(components, c, scc);
+        return scc;
+    }
+
+    List<String> stronglyConnectedComponents(ForkJoinPool pool){
+        Components components = graph.components(pool);
+        List<String> scc = new ArrayList<>(components.count());
+        for (int c = 0; c < components.count(); c++) describe(components, c, scc);
+        return scc;
+    }
+
+    Map<T, Integer> hopDistances(int[] sources){
+        ShortestHops hops = search().from(sources);
+        Map<T, Integer> distances = new HashMap<>();
+        for (int v = 0; v < graph.size(); v++) {
+            if(hops.isReachable(v)) distances.put(idOf(v), hops.distance(v));
+        }
+        return distances;
+    }
+
+    /**
+     * @param starts The start, or none if it is not in the graph.
+     */
+
+    List<T> shortestPath(int[] starts, int end){
+        List<T> path = new ArrayList<>();
+        for (int v : search().from(starts).pathTo(end)) path.add(idOf(v));
+        return path;
+    }
+
+    private BreadthFirstSearch search(){
+        if(search == null) search = new BreadthFirstSearch(graph);
+        return search;
+    }
+
+    // adds the component to the list, unless it is a number without a vertex
+    private void describe(Components components, int component, List<String> scc){
+        int[] vertices = components.vertices(component);
+        if(vertices.length == 1 && idOf(vertices[0]) == null) return;
+        StringBuilder builder = new StringBuilder();
+        for (int v : vertices) builder.append("<").append(idOf(v)).append(">");
+        scc.add(builder.toString());
+    }
+}
@@ -0,0 +1,53 @@
+package AlgDat.Graphs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits ranges of vertices or edges between the threads of a ForkJoinPool.
+ */
+
+final class Parallel {
+
+    private Parallel(){}
+
+    interface Range {
+        void accept(int from, int to);
+    }
+
+    /**
+     * Runs body on pieces of from .. to - 1 of at most grain elements, and returns when all are done.
+     * Ranges no larger than one piece run directly on the calling thread, to keep small steps cheap.
+     */
+
+    static void forRange(ForkJoinPool pool, int from, int to, int grain, Range body){
+        if(to - from <= grain){
+            if(from < to) body.accept(from, to);
+        } else pool.invoke(new Split(from, to, grain, body));
+    }
+
+    private static final class Split extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final Range body;
+
+        Split(int from, int to, int grain, Range body){
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= grain){
+                body.accept(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Split(from, middle, grain, body), new Split(middle, to, grain, body));
+        }
+    }
+}
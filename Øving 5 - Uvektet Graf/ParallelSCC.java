@@ -0,0 +1,264 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Strongly connected components found on several threads, in four phases:
+ * <ol>
+ *     <li>Trimming. Vertices with no remaining incoming or outgoing edges are components of their own,
+ *     and are removed until none are left.</li>
+ *     <li>Forward-backward. The component of a pivot is the vertices both reachable from it and reaching it,
+ *     found by two parallel breadth first searches. The pivot has the highest degree, so in road networks
+ *     and similar graphs this is the one giant component.</li>
+ *     <li>Trimming again.</li>
+ *     <li>What is left is split into weakly connected parts, which TarjanSCC searches in parallel.</li>
+ * </ol>
+ * The components are the same as TarjanSCC and Kosaraju find, but numbered in no particular order.
+ */
+
+public class ParallelSCC {
+
+    private static final int GRAIN = 1024; // vertices per task
+
+    private final IntGraph graph;
+    private final IntGraph reverse;
+    private final ForkJoinPool pool;
+    private final int[] component;
+    private final AtomicBitSet done; // vertices with a component
+    private final AtomicInteger count = new AtomicInteger();
+
+    private ParallelSCC(IntGraph graph, ForkJoinPool pool){
+        this.graph = graph;
+        this.reverse = graph.transposed();
+        this.pool = pool;
+        this.component = new int[graph.size()];
+        this.done = new AtomicBitSet(graph.size());
+        Arrays.fill(component, -1);
+    }
+
+    public static Components find(IntGraph graph){
+        return find(graph, ForkJoinPool.commonPool());
+    }
+
+    public static Components find(IntGraph graph, ForkJoinPool pool){
+        ParallelSCC scc = new ParallelSCC(graph, pool);
+        AtomicIntegerArray in = new AtomicIntegerArray(graph.size());
+        AtomicIntegerArray out = new AtomicIntegerArray(graph.size());
+
+        scc.trim(in, out);
+        int pivot = scc.pivot(in, out);
+        if(pivot >= 0) scc.forwardBackward(pivot);
+        scc.trim(in, out);
+        scc.decompose();
+        return new Components(scc.component, scc.count.get());
+    }
+
+    /**
+     * Counts the edges between remaining vertices, and removes those without incoming or outgoing ones
+     * in rounds. Each round only looks at the vertices whose count dropped to 0 in the one before.
+     */
+
+    private void trim(AtomicIntegerArray in, AtomicIntegerArray out){
+        parallelFor(0, graph.size(), GRAIN, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                if(done.get(v)) continue;
+                out.set(v, remaining(graph, v));
+                in.set(v, remaining(reverse, v));
+            }
+        });
+
+        int[] candidates = null; // every vertex in the first round
+        int size = graph.size();
+        while (size > 0){
+            int[] round = candidates;
+            IntList next = new IntList();
+            parallelFor(0, size, GRAIN, (from, to) -> {
+                IntList found = new IntList();
+                for (int i = from; i < to; i++) {
+                    int v = round == null ? i : round[i];
+                    if(done.get(v) || (in.get(v) != 0 && out.get(v) != 0) || !done.set(v)) continue;
+
+                    component[v] = count.getAndIncrement();
+                    for (int edge = graph.firstEdge(v); edge < graph.endEdge(v); edge++) {
+                        int w = graph.target(edge);
+                        if(!done.get(w) && in.decrementAndGet(w) == 0) found.add(w);
+                    }
+                    for (int edge = reverse.firstEdge(v); edge < reverse.endEdge(v); edge++) {
+                        int u = reverse.target(edge);
+                        if(!done.get(u) && out.decrementAndGet(u) == 0) found.add(u);
+                    }
+                }
+                next.addAll(found);
+            });
+            candidates = next.values;
+            size = next.size;
+        }
+    }
+
+    private int remaining(IntGraph edges, int v){
+        int remaining = 0;
+        for (int edge = edges.firstEdge(v); edge < edges.endEdge(v); edge++) {
+            if(!done.get(edges.target(edge))) remaining++;
+        }
+        return remaining;
+    }
+
+    /**
+     * @return The remaining vertex with the most paths through it, or -1 if none remain.
+     */
+
+    private int pivot(AtomicIntegerArray in, AtomicIntegerArray out){
+        long[] best = {-1, -1}; // score, vertex
+        parallelFor(0, graph.size(), GRAIN, (from, to) -> {
+            long score = -1;
+            int vertex = -1;
+            for (int v = from; v < to; v++) {
+                if(done.get(v)) continue;
+                long product = (long) in.get(v) * out.get(v);
+                if(product > score){
+                    score = product;
+                    vertex = v;
+                }
+            }
+            synchronized (best) {
+                if(score > best[0]){
+                    best[0] = score;
+                    best[1] = vertex;
+                }
+            }
+        });
+        return (int) best[1];
+    }
+
+    /**
+     * The pivot's component is everything reaching it among what it reaches, as every vertex on such
+     * a path is both reachable from and reaching the pivot.
+     */
+
+    private void forwardBackward(int pivot){
+        AtomicBitSet forward = new AtomicBitSet(graph.size());
+        search(graph, pivot, w -> !done.get(w), forward);
+        IntList members = search(reverse, pivot, forward::get, new AtomicBitSet(graph.size()));
+
+        int c = count.getAndIncrement();
+        parallelFor(0, members.size, GRAIN, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                component[members.values[i]] = c;
+                done.set(members.values[i]);
+            }
+        });
+    }
+
+    /**
+     * Level by level breadth first search, each level split between the threads.
+     * @return Every vertex reached, start included, all of which are set in visited.
+     */
+
+    private IntList search(IntGraph edges, int start, IntPredicate allowed, AtomicBitSet visited){
+        IntList reached = new IntList();
+        visited.set(start);
+        reached.add(start);
+
+        for (int from = 0; from < reached.size;) {
+            // the next level is appended behind this one, see IntList.addAll
+            int[] level = reached.values;
+            int to = reached.size;
+            parallelFor(from, to, GRAIN, (first, end) -> {
+                IntList found = new IntList();
+                for (int i = first; i < end; i++) {
+                    int v = level[i];
+                    for (int edge = edges.firstEdge(v); edge < edges.endEdge(v); edge++) {
+                        int w = edges.target(edge);
+                        if(allowed.test(w) && !visited.get(w) && visited.set(w)) found.add(w);
+                    }
+                }
+                reached.addAll(found);
+            });
+            from = to;
+        }
+        return reached;
+    }
+
+    /**
+     * Splits the remaining vertices into weakly connected parts by a lock free union-find,
+     * and runs TarjanSCC on each part. No edge leads between parts, so the searches are independent.
+     */
+
+    private void decompose(){
+        int n = graph.size();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        parallelFor(0, n, GRAIN, (from, to) -> {
+            for (int v = from; v < to; v++) parent.set(v, v);
+        });
+        parallelFor(0, n, GRAIN, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                if(done.get(v)) continue;
+                for (int edge = graph.firstEdge(v); edge < graph.endEdge(v); edge++) {
+                    int w = graph.target(edge);
+                    if(!done.get(w)) union(parent, v, w);
+                }
+            }
+        });
+
+        // counting sort of the remaining vertices by part
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            if(!done.get(v)) offsets[find(parent, v) + 1]++;
+        }
+        int parts = 0;
+        int[] partStart = new int[16];
+        for (int v = 0; v < n; v++) {
+            if(offsets[v + 1] > 0){
+                if(parts == partStart.length) partStart = Arrays.copyOf(partStart, 2 * parts);
+                partStart[parts++] = offsets[v];
+            }
+            offsets[v + 1] += offsets[v];
+        }
+        int[] members = new int[offsets[n]];
+        for (int v = 0; v < n; v++) {
+            if(!done.get(v)) members[offsets[find(parent, v)]++] = v;
+        }
+
+        int[] starts = Arrays.copyOf(partStart, parts + 1);
+        starts[parts] = members.length;
+        int[] index = new int[n];
+        int[] lowlink = new int[n];
+        parallelFor(0, parts, 16, (from, to) -> {
+            TarjanSCC.Search tarjan = new TarjanSCC.Search(graph, index, lowlink, component, count);
+            for (int i = starts[from]; i < starts[to]; i++) tarjan.from(members[i]);
+        });
+    }
+
+    // roots are the smallest vertex of their set, so links always point downwards and never form cycles
+    private static int find(AtomicIntegerArray parent, int v){
+        int p;
+        while ((p = parent.get(v)) != v){
+            int grandparent = parent.get(p);
+            parent.compareAndSet(v, p, grandparent);
+            v = grandparent;
+        }
+        return v;
+    }
+
+    private static void union(AtomicIntegerArray parent, int u, int v){
+        while (true){
+            u = find(parent, u);
+            v = find(parent, v);
+            if(u == v) return;
+            if(u < v){
+                int swap = u;
+                u = v;
+                v = swap;
+            }
+            if(parent.compareAndSet(u, u, v)) return;
+        }
+    }
+
+    private void parallelFor(int from, int to, int grain, Parallel.Range body){
+        Parallel.forRange(pool, from, to, grain, body);
+    }
+}
@@ -0,0 +1,221 @@
+package AlgDat.Graphs;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Answers whether one vertex reaches another, from labels on the condensation DAG.
+ * <p>
+ * The 64 components with the most paths through them are landmarks, and each component records, as a bit
+ * mask, which landmarks it reaches and which reach it. A landmark between u and v proves a path, and a
+ * landmark reaching u but not v, or reached by v but not u, proves there is none. In road networks and
+ * other graphs with a giant component, that component is a landmark, and most queries end here.
+ * <p>
+ * For the rest, each of LABELINGS depth first traversals of the DAG, each visiting children in its own pseudo random order,
+ * gives every component an interval: from the lowest post order number below it to its own (GRAIL,
+ * Yildirim et al.). A component reaching another contains its interval in every labeling, so an interval
+ * not contained proves there is no path. So does a target numbered higher than the source, as DAG edges
+ * lead to lower numbers. What is left is answered by searching the DAG, skipping every component the labels
+ * rule out and stopping at the first one a landmark proves to reach the target.
+ * <p>
+ * The landmarks' searches and the labelings are independent, and are built in parallel.
+ */
+
+public class ReachabilityIndex {
+
+    private static final int LABELINGS = 4;
+    private static final int LANDMARKS = Long.SIZE;
+    private static final VarHandle MASKS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Condensation condensation;
+    private final IntGraph dag;
+    private final int[][] low;  // per labeling, the lowest post order number below each component
+    private final int[][] post; // per labeling, the post order number of each component
+    private final long[] reaches;   // landmarks each component reaches
+    private final long[] reachedBy; // landmarks reaching each component
+    private final ThreadLocal<Scratch> scratch;
+
+    private ReachabilityIndex(Condensation condensation, int[][] low, int[][] post, long[] reaches, long[] reachedBy){
+        this.condensation = condensation;
+        this.dag = condensation.dag();
+        this.low = low;
+        this.post = post;
+        this.reaches = reaches;
+        this.reachedBy = reachedBy;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(dag.size()));
+    }
+
+    public static ReachabilityIndex build(IntGraph graph){
+        return build(graph, ForkJoinPool.commonPool());
+    }
+
+    public static ReachabilityIndex build(IntGraph graph, ForkJoinPool pool){
+        Condensation condensation = Condensation.of(graph);
+        IntGraph dag = condensation.dag();
+        IntGraph reverse = dag.transposed();
+        int[] landmarks = landmarks(dag, reverse);
+        long[] reaches = new long[dag.size()];
+        long[] reachedBy = new long[dag.size()];
+        int[][] low = new int[LABELINGS][];
+        int[][] post = new int[LABELINGS][];
+
+        // tasks 0 .. 2 * landmarks - 1 search from a landmark, the rest make a labeling
+        Parallel.forRange(pool, 0, 2 * landmarks.length + LABELINGS, 1, (from, to) -> {
+            for (int task = from; task < to; task++) {
+                if(task < landmarks.length) mark(reverse, landmarks[task], task, reaches);
+                else if(task < 2 * landmarks.length) mark(dag, landmarks[task - landmarks.length], task - landmarks.length, reachedBy);
+                else {
+                    int labeling = task - 2 * landmarks.length;
+                    low[labeling] = new int[dag.size()];
+                    post[labeling] = new int[dag.size()];
+                    label(dag, labeling, low[labeling], post[labeling]);
+                }
+            }
+        });
+        return new ReachabilityIndex(condensation, low, post, reaches, reachedBy);
+    }
+
+    public Condensation condensation(){
+        return condensation;
+    }
+
+    /**
+     * @return True if there is a path from u to v. Every vertex reaches itself.
+     */
+
+    public boolean reachable(int u, int v){
+        int from = condensation.componentOf(u);
+        int to = condensation.componentOf(v);
+        if(from == to || (reaches[from] & reachedBy[to]) != 0) return true;
+        if(!mayReach(from, to)) return false;
+        return scratch.get().search(from, to);
+    }
+
+    private boolean mayReach(int from, int to){
+        if(to > from) return false;
+        if((reachedBy[from] & ~reachedBy[to]) != 0 || (reaches[to] & ~reaches[from]) != 0) return false;
+        for (int labeling = 0; labeling < LABELINGS; labeling++) {
+            if(low[labeling][to] < low[labeling][from] || post[labeling][to] > post[labeling][from]) return false;
+        }
+        return true;
+    }
+
+    // the components with the highest product of in and out degree
+    private static int[] landmarks(IntGraph dag, IntGraph reverse){
+        long[] scores = new long[dag.size()];
+        for (int c = 0; c < dag.size(); c++) {
+            // capped, so the score keeps to the high half, and hubs do not overflow into low or negative scores
+            long product = Math.min(Integer.MAX_VALUE, (dag.degree(c) + 1L) * (reverse.degree(c) + 1L));
+            scores[c] = product << 32 | c;
+        }
+        Arrays.sort(scores);
+        int[] landmarks = new int[Math.min(LANDMARKS, scores.length)];
+        for (int i = 0; i < landmarks.length; i++) landmarks[i] = (int) scores[scores.length - 1 - i];
+        return landmarks;
+    }
+
+    // sets the bit in the mask of every component reachable from the landmark by the edges
+    private static void mark(IntGraph edges, int landmark, int bit, long[] masks){
+        long mask = 1L << bit;
+        IntList stack = IntList.of(landmark);
+        MASKS.getAndBitwiseOr(masks, landmark, mask);
+
+        while (stack.size > 0){
+            int c = stack.values[--stack.size];
+            for (int edge = edges.firstEdge(c); edge < edges.endEdge(c); edge++) {
+                int next = edges.target(edge);
+                // only this task sets this bit, so a plain read sees whether it has been here
+                if((masks[next] & mask) != 0) continue;
+                MASKS.getAndBitwiseOr(masks, next, mask);
+                stack.add(next);
+            }
+        }
+    }
+
+    // one traversal, with roots and children in an order of its own
+    private static void label(IntGraph dag, int labeling, int[] low, int[] post){
+        int n = dag.size();
+        boolean[] visited = new boolean[n];
+        int[] vertices = new int[16];
+        int[] steps = new int[16]; // children looked at so far
+        int counter = 0;
+
+        for (int i = 0; i < n; i++) {
+            int root = labeling % 2 == 0 ? i : n - 1 - i;
+            if(visited[root]) continue;
+            visited[root] = true;
+            int depth = 0;
+            vertices[0] = root;
+            steps[0] = 0;
+            low[root] = Integer.MAX_VALUE;
+
+            while (depth >= 0){
+                int c = vertices[depth];
+                int degree = dag.degree(c);
+                if(steps[depth] == degree){
+                    post[c] = counter++;
+                    low[c] = Math.min(low[c], post[c]);
+                    if(--depth >= 0) low[vertices[depth]] = Math.min(low[vertices[depth]], low[c]);
+                    continue;
+                }
+
+                // children are visited from a starting point that depends on the labeling
+                int child = dag.target(dag.firstEdge(c) + (int) ((steps[depth]++ + mix(c, labeling)) % degree));
+                if(visited[child]){
+                    low[c] = Math.min(low[c], low[child]);
+                    continue;
+                }
+                visited[child] = true;
+                low[child] = Integer.MAX_VALUE;
+                if(++depth == vertices.length){
+                    vertices = Arrays.copyOf(vertices, 2 * depth);
+                    steps = Arrays.copyOf(steps, 2 * depth);
+                }
+                vertices[depth] = child;
+                steps[depth] = 0;
+            }
+        }
+    }
+
+    private static long mix(int c, int labeling){
+        long h = (c + 1L) * 0x9E3779B97F4A7C15L ^ labeling * 0xC2B2AE3D27D4EB4FL;
+        return (h ^ (h >>> 29)) & Long.MAX_VALUE;
+    }
+
+    /**
+     * Per thread state of the fallback search, reused between queries.
+     */
+
+    private final class Scratch {
+
+        private final int[] visited;
+        private int epoch;
+        private int[] stack = new int[16];
+
+        Scratch(int size){
+            visited = new int[size];
+        }
+
+        boolean search(int from, int to){
+            epoch++;
+            int size = 0;
+            stack[size++] = from;
+            visited[from] = epoch;
+
+            while (size > 0){
+                int c = stack[--size];
+                for (int edge = dag.firstEdge(c); edge < dag.endEdge(c); edge++) {
+                    int next = dag.target(edge);
+                    if(next == to || (reaches[next] & reachedBy[to]) != 0) return true;
+                    if(visited[next] == epoch || !mayReach(next, to)) continue;
+                    visited[next] = epoch;
+                    if(size == stack.length) stack = Arrays.copyOf(stack, 2 * size);
+                    stack[size++] = next;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+
+/**
+ * Result of a breadth first search: the fewest edges from the nearest source to every vertex,
+ * and the vertex before it on such a shortest path.
+ */
+
+public class ShortestHops {
+
+    private final int[] distance;
+    private final int[] predecessor;
+
+    ShortestHops(int[] distance, int[] predecessor){
+        this.distance = distance;
+        this.predecessor = predecessor;
+    }
+
+    /**
+     * @return Number of edges on a shortest path to v, 0 for the sources and -1 if v is unreachable.
+     */
+
+    public int distance(int v){
+        return distance[v];
+    }
+
+    /**
+     * @return The vertex before v on a shortest path, or -1 for the sources and unreachable vertices.
+     */
+
+    public int predecessor(int v){
+        return predecessor[v];
+    }
+
+    public boolean isReachable(int v){
+        return distance[v] >= 0;
+    }
+
+    /**
+     * @return The vertices of a shortest path from its source to v, both included. Empty if v is unreachable.
+     */
+
+    public int[] pathTo(int v){
+        if(distance[v] < 0) return new int[0];
+        int[] path = new int[distance[v] + 1];
+        for (int i = path.length - 1; i >= 0; i--, v = predecessor[v]) path[i] = v;
+        return path;
+    }
+
+    /**
+     * @return The distance of every vertex. The array is shared, and must not be modified.
+     */
+
+    public int[] distances(){
+        return distance;
+    }
+
+    /**
+     * @return The predecessor of every vertex. The array is shared, and must not be modified.
+     */
+
+    public int[] predecessors(){
+        return predecessor;
+    }
+
+    @Override
+    public String toString() {
+        return "ShortestHops" + Arrays.toString(distance);
+    }
+}
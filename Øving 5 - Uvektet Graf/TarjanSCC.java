@@ -0,0 +1,108 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tarjan's algorithm for strongly connected components, finding every component in a single
+ * depth first pass without a transposed graph. The recursion is replaced by explicit int stacks,
+ * so graphs with millions of vertices and long paths are handled without growing the thread stack.
+ */
+
+public class TarjanSCC {
+
+    private TarjanSCC(){}
+
+    /**
+     * @return The components of the graph. Components are numbered in the order they are completed,
+     * which is a reverse topological order: edges between components never lead to a higher number.
+     */
+
+    public static Components find(IntGraph graph){
+        int n = graph.size();
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        AtomicInteger count = new AtomicInteger();
+
+        Search search = new Search(graph, new int[n], new int[n], component, count);
+        for (int root = 0; root < n; root++) search.from(root);
+        return new Components(component, count.get());
+    }
+
+    /**
+     * The state of a search, shared by every root it is started from. Vertices with a component
+     * already are skipped, so several searches may run at once on parts of the graph no edge
+     * leads between, as ParallelSCC does.
+     */
+
+    static final class Search {
+
+        private final IntGraph graph;
+        private final int[] index;      // order of discovery, starting at 1. 0 means not yet discovered
+        private final int[] lowlink;    // lowest index reachable through the dfs subtree and one back edge
+        private final int[] component;  // -1 while the vertex is unassigned, and on the component stack if discovered
+        private final AtomicInteger count;
+
+        private int[] stack = new int[16];      // discovered vertices not yet assigned to a component
+        private int stackSize;
+        private int[] vertices = new int[16];   // dfs frames: a vertex and the next of its edges to follow
+        private int[] edges = new int[16];
+        private int counter;
+
+        Search(IntGraph graph, int[] index, int[] lowlink, int[] component, AtomicInteger count){
+            this.graph = graph;
+            this.index = index;
+            this.lowlink = lowlink;
+            this.component = component;
+            this.count = count;
+        }
+
+        void from(int root){
+            if(index[root] != 0 || component[root] != -1) return;
+
+            int depth = 0;
+            discover(root, 0);
+
+            while (depth >= 0){
+                int v = vertices[depth];
+
+                if(edges[depth] < graph.endEdge(v)){
+                    int w = graph.target(edges[depth]++);
+                    if(component[w] != -1) continue;
+                    if(index[w] == 0){
+                        discover(w, ++depth);
+                    } else {
+                        lowlink[v] = Math.min(lowlink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                // v is done. if nothing below it reaches further back, v roots a component
+                if(lowlink[v] == index[v]){
+                    int c = count.getAndIncrement();
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        component[w] = c;
+                    } while (w != v);
+                }
+                if(--depth >= 0){
+                    int parent = vertices[depth];
+                    lowlink[parent] = Math.min(lowlink[parent], lowlink[v]);
+                }
+            }
+        }
+
+        private void discover(int v, int depth){
+            if(depth == vertices.length){
+                vertices = Arrays.copyOf(vertices, 2 * depth);
+                edges = Arrays.copyOf(edges, 2 * depth);
+            }
+            if(stackSize == stack.length) stack = Arrays.copyOf(stack, 2 * stackSize);
+            vertices[depth] = v;
+            edges[depth] = graph.firstEdge(v);
+            index[v] = lowlink[v] = ++counter;
+            stack[stackSize++] = v;
+        }
+    }
+}
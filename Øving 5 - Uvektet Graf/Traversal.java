@@ -0,0 +1,121 @@
+package AlgDat.Graphs;
+
+import java.util.Arrays;
+
+/**
+ * Reusable state for traversing an IntGraph: a bitset of visited vertices, and the stacks of the search.
+ * Vertices stay visited between traversals until reset, so a series of searches covers each vertex once,
+ * as in Kosaraju's algorithm. Nothing is allocated per traversal once the stacks have grown, and reset
+ * only clears the words of the bitset that were set.
+ * <p>
+ * The hot loops call the visitor directly, so with one kind of visitor per call site the JIT inlines it.
+ */
+
+public class Traversal {
+
+    private final IntGraph graph;
+    private final long[] visited;
+    private final int[] touched; // words of visited with any bit set, so reset clears only those
+    private int touchedCount;
+    private int[] vertices = new int[16]; // dfs frames, or the bfs queue
+    private int[] edges = new int[16];
+
+    public Traversal(IntGraph graph){
+        this.graph = graph;
+        this.visited = new long[(graph.size() + 63) >>> 6];
+        this.touched = new int[visited.length];
+    }
+
+    public boolean isVisited(int v){
+        return (visited[v >>> 6] & 1L << v) != 0;
+    }
+
+    /**
+     * Marks v visited, so traversals will not enter it.
+     * @return False if it was visited already.
+     */
+
+    public boolean visit(int v){
+        int word = v >>> 6;
+        long bits = visited[word];
+        if((bits & 1L << v) != 0) return false;
+        if(bits == 0) touched[touchedCount++] = word;
+        visited[word] = bits | 1L << v;
+        return true;
+    }
+
+    /**
+     * Forgets every visited vertex.
+     */
+
+    public void reset(){
+        for (int i = 0; i < touchedCount; i++) visited[touched[i]] = 0;
+        touchedCount = 0;
+    }
+
+    /**
+     * Depth first traversal from start through vertices not visited before.
+     * @return Number of vertices entered, 0 if start was visited already.
+     */
+
+    public int depthFirst(int start, GraphVisitor visitor){
+        if(!visit(start)) return 0;
+        int count = 1;
+        if(!visitor.enter(start)) return count;
+
+        int depth = 0;
+        vertices[0] = start;
+        edges[0] = graph.firstEdge(start);
+        while (depth >= 0){
+            int v = vertices[depth];
+            if(edges[depth] == graph.endEdge(v)){
+                visitor.exit(v);
+                depth--;
+                continue;
+            }
+
+            int w = graph.target(edges[depth]++);
+            if(!visit(w)) continue;
+            count++;
+            if(!visitor.enter(w)) continue;
+
+            if(++depth == vertices.length){
+                vertices = Arrays.copyOf(vertices, 2 * depth);
+                edges = Arrays.copyOf(edges, 2 * depth);
+            }
+            vertices[depth] = w;
+            edges[depth] = graph.firstEdge(w);
+        }
+        return count;
+    }
+
+    /**
+     * Breadth first traversal from start through vertices not visited before. Vertices are entered
+     * in order of distance, and exited once their edges have been looked at.
+     * @return Number of vertices entered, 0 if start was visited already.
+     */
+
+    public int breadthFirst(int start, GraphVisitor visitor){
+        if(!visit(start)) return 0;
+        int count = 1;
+        if(!visitor.enter(start)) return count;
+
+        int head = 0;
+        int tail = 0;
+        vertices[tail++] = start;
+        while (head < tail){
+            int v = vertices[head++];
+            for (int edge = graph.firstEdge(v); edge < graph.endEdge(v); edge++) {
+                int w = graph.target(edge);
+                if(!visit(w)) continue;
+                count++;
+                if(!visitor.enter(w)) continue;
+
+                if(tail == vertices.length) vertices = Arrays.copyOf(vertices, 2 * tail);
+                vertices[tail++] = w;
+            }
+            visitor.exit(v);
+        }
+        return count;
+    }
+}
@@ -2,8 +2,9 @@ package Client
 
 import java.io.{BufferedInputStream, FileOutputStream}
 import java.net.URL
+import java.nio.file.{Files, Paths}
 
-import Compression.{HuffmanCodec, LZCompressor}
+import Compression.{BlockCodec, CompressionMetrics, CompressionTotals}
 
 object CompressTest extends App {
 
@@ -20,17 +21,18 @@ object CompressTest extends App {
   dataStream.close()
   println(s"\nFilename: $filename\nOriginal byte size: ${extractedData.length}")
 
-  val originalOutputStream = new FileOutputStream("./TestData/".concat("original_").concat(filename))
+  val originalPath = Paths.get("./TestData/".concat("original_").concat(filename))
+  val originalOutputStream = new FileOutputStream(originalPath.toFile)
   originalOutputStream.write(extractedData)
   originalOutputStream.close()
 
-  val lz77Code = LZCompressor.compress(extractedData)
-  println(s"LZ77 byte size: ${lz77Code.length}")
+  // time spent and bytes in and out per stage, summed over the blocks
+  val totals = new CompressionTotals()
+  CompressionMetrics.addListener(totals)
 
-  val huffmanCode = HuffmanCodec.construct(lz77Code).encode(lz77Code)
-  println(s"Huffman compressed byte size (on top of LZ77): ${huffmanCode.length}")
-
-  val fileOutputStream = new FileOutputStream("./TestData/".concat(filename).concat(".lgh"))
-  fileOutputStream.write(huffmanCode)
-  fileOutputStream.close()
+  // LZ77 and huffman coding, block by block on every core, straight from and to the mapped files
+  val compressedPath = Paths.get("./TestData/".concat(filename).concat(".lgh"))
+  BlockCodec.compressFile(originalPath, compressedPath)
+  println(s"LZ77 + Huffman compressed byte size: ${Files.size(compressedPath)}")
+  println(s"\n$totals")
 }
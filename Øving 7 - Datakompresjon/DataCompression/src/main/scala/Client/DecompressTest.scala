@@ -1,8 +1,9 @@
 package Client
 
-import java.io.{File, FileInputStream, FileOutputStream}
+import java.io.File
+import java.nio.file.{Files, Paths}
 
-import Compression.{HuffmanCodec, LZDecompressor}
+import Compression.BlockCodec
 
 object DecompressTest extends App {
 
@@ -10,18 +11,8 @@ object DecompressTest extends App {
 
   println(s"\nFilename: ${file.getName}")
 
-  val dataStream = new FileInputStream(file)
+  val decompressedPath = Paths.get(file.getPath.split(".lgh").head)
+  BlockCodec.decompressFile(file.toPath, decompressedPath)
 
-  val extractedData = dataStream
-    .readAllBytes()
-  dataStream.close()
-
-  val lz77Code = HuffmanCodec.reconstruct(extractedData).decode(extractedData)
-  val decompressedData = LZDecompressor.decompress(lz77Code)
-
-  print(s"Decompressed byte size: ${decompressedData.length}\n")
-
-  val fileOutputStream = new FileOutputStream(file.getPath.split(".lgh").head)
-  fileOutputStream.write(decompressedData)
-  fileOutputStream.close()
+  print(s"Decompressed byte size: ${Files.size(decompressedPath)}\n")
 }
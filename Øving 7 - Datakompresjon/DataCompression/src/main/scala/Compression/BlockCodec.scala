@@ -0,0 +1,306 @@
+package Compression
+
+import java.io.{InputStream, OutputStream}
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.FileChannel.MapMode.{READ_ONLY, READ_WRITE}
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.{CREATE, READ, TRUNCATE_EXISTING, WRITE}
+import java.util.concurrent.{CompletableFuture, CompletionException, ForkJoinPool}
+
+import scala.collection.mutable
+
+/**
+ * Block framed container for LZ77 followed by huffman coding (.lgh). The input is split into blocks which are
+ * compressed independently, so blocks are processed in parallel and may be decompressed one at a time:
+ *
+ *   block 0 | block 1 | ... | index | block count (4) | block size (4) | magic (4)
+ *
+ * The index holds the raw and the compressed length (4 bytes each) of every block, in order.
+ * It is placed last so blocks can be written as soon as they, and every block before them, are done.
+ */
+
+object BlockCodec {
+
+  val DefaultBlockSize: Int = 1 << 20
+  val Magic: Int = 0x4c474831 // "LGH1"
+  val TrailerLength = 12
+
+  /**
+   * Compresses the data block by block on the pool.
+   * @param raw Any data.
+   * @param blockSize Number of raw bytes per block.
+   * @param pool Pool the blocks are compressed on.
+   * @param level LZ77 parse strategy, trading speed for ratio.
+   * @return The .lgh container.
+   */
+
+  def compress(raw: Array[Byte], blockSize: Int = DefaultBlockSize,
+               pool: ForkJoinPool = ForkJoinPool.commonPool(),
+               level: CompressionLevel = CompressionLevel.GREEDY): Array[Byte] = {
+    requireBlockSize(blockSize)
+
+    val blocks = (0 until blockCount(raw.length, blockSize)).map(block => {
+      val from = block * blockSize
+      val to = math.min(raw.length, from + blockSize)
+      CompletableFuture.supplyAsync(() => compressBlock(java.util.Arrays.copyOfRange(raw, from, to), level), pool)
+    })
+
+    val compressed = blocks.map(join(_))
+    val index = BlockIndex(blockSize
+      , compressed.indices.map(block => math.min(blockSize, raw.length - block * blockSize)).toArray
+      , compressed.map(_.length).toArray)
+
+    val container = ByteBuffer.allocate(index.compressedOffset(index.blockCount).toInt + index.length)
+    compressed.foreach(container.put)
+    container.put(index.toByteArray)
+    container.array()
+  }
+
+  /**
+   * Compresses a stream block by block on the pool. At most two blocks per worker are held in memory,
+   * and blocks are written in order as soon as they are done.
+   * @param in Any data, read until its end but not closed.
+   * @param out Receives the .lgh container, not closed.
+   */
+
+  def compress(in: InputStream, out: OutputStream, blockSize: Int, pool: ForkJoinPool, level: CompressionLevel): Unit = {
+    requireBlockSize(blockSize)
+
+    val inFlight = mutable.Queue[CompletableFuture[Array[Byte]]]()
+    val rawLengths = mutable.ArrayBuilder.make[Int]
+    val compressedLengths = mutable.ArrayBuilder.make[Int]
+
+    def writeOldest(): Unit = {
+      val compressed = join(inFlight.dequeue())
+      out.write(compressed)
+      compressedLengths.addOne(compressed.length)
+    }
+
+    var block = in.readNBytes(blockSize)
+    while (block.length > 0) {
+      if (inFlight.size >= 2 * pool.getParallelism) writeOldest()
+      val raw = block
+      inFlight.enqueue(CompletableFuture.supplyAsync(() => compressBlock(raw, level), pool))
+      rawLengths.addOne(raw.length)
+      block = if (raw.length == blockSize) in.readNBytes(blockSize) else Array.emptyByteArray
+    }
+    while (inFlight.nonEmpty) writeOldest()
+
+    out.write(BlockIndex(blockSize, rawLengths.result(), compressedLengths.result()).toByteArray)
+  }
+
+  def compress(in: InputStream, out: OutputStream): Unit =
+    compress(in, out, DefaultBlockSize, ForkJoinPool.commonPool(), CompressionLevel.GREEDY)
+
+  /**
+   * Compresses a file into a .lgh container through memory mapped regions, so neither file has to fit on the heap.
+   * Blocks are read straight from the mapped input, and huffman coded straight into the mapped output.
+   * Only the LZ77 code of a wave of two blocks per worker is held in memory at a time.
+   * @param in Any file.
+   * @param out File receiving the container, replaced if it exists.
+   */
+
+  def compressFile(in: Path, out: Path, blockSize: Int = DefaultBlockSize,
+                   pool: ForkJoinPool = ForkJoinPool.commonPool(),
+                   level: CompressionLevel = CompressionLevel.GREEDY): Unit = {
+    requireBlockSize(blockSize)
+
+    val input = FileChannel.open(in, READ)
+    val output = FileChannel.open(out, CREATE, TRUNCATE_EXISTING, READ, WRITE)
+    try {
+      val size = input.size()
+      val blocks = blockCount(size, blockSize)
+      val rawLengths = Array.tabulate(blocks)(block => math.min(blockSize, size - block.toLong * blockSize).toInt)
+      val compressedLengths = new Array[Int](blocks)
+      val wave = 2 * pool.getParallelism
+      var offset = 0L
+
+      for (first <- 0 until blocks by wave) {
+        val lz77Codes = (first until math.min(blocks, first + wave)).map(block => CompletableFuture.supplyAsync(() => {
+          val lz77Code = LZCompressor.compress(input.map(READ_ONLY, block.toLong * blockSize, rawLengths(block)), level)
+          lz77Code -> HuffmanCodec.construct(lz77Code)
+        }, pool)).map(join(_))
+
+        // the output offsets are known once the wave is LZ77 coded, and the huffman coding is done in place
+        val encodings = lz77Codes.zipWithIndex.map { case ((lz77Code, codec), waveIndex) =>
+          val length = codec.encodedLength(lz77Code).toInt
+          val region = output.map(READ_WRITE, offset, length)
+          compressedLengths(first + waveIndex) = length
+          offset += length
+          CompletableFuture.runAsync(() => codec.encode(lz77Code, region), pool)
+        }
+        join(CompletableFuture.allOf(encodings: _*))
+      }
+
+      val index = ByteBuffer.wrap(BlockIndex(blockSize, rawLengths, compressedLengths).toByteArray)
+      while (index.hasRemaining) output.write(index, offset + index.position())
+    } finally {
+      input.close()
+      output.close()
+    }
+  }
+
+  /**
+   * Decompresses a .lgh container file in parallel through memory mapped regions.
+   * @param in A .lgh container.
+   * @param out File receiving the original data, replaced if it exists.
+   * @throws IllegalArgumentException If the container or the huffman coding of a block is corrupt.
+   * @throws java.io.IOException If the LZ77 code of a block is corrupt, or the files cannot be read or written.
+   */
+
+  def decompressFile(in: Path, out: Path, pool: ForkJoinPool = ForkJoinPool.commonPool()): Unit = {
+    val input = FileChannel.open(in, READ)
+    val output = FileChannel.open(out, CREATE, TRUNCATE_EXISTING, READ, WRITE)
+    try {
+      val index = BlockIndex(input)
+      // the output is given its full size up front, rather than being grown by each mapping
+      if (index.rawLength > 0) output.write(ByteBuffer.allocate(1), index.rawLength - 1)
+
+      join(CompletableFuture.allOf((0 until index.blockCount).map(block => CompletableFuture.runAsync(() => {
+        val compressed = input.map(READ_ONLY, index.compressedOffset(block), index.compressedLength(block))
+        val decompressed = decompressBlock(compressed, index, block)
+        output.map(READ_WRITE, index.rawOffset(block), decompressed.length).put(decompressed)
+      }, pool)): _*))
+    } finally {
+      input.close()
+      output.close()
+    }
+  }
+
+  /**
+   * Decompresses every block in parallel.
+   * @param zipped A .lgh container.
+   * @param pool Pool the blocks are decompressed on.
+   * @return The original data.
+   * @throws IllegalArgumentException If the container or the huffman coding of a block is corrupt.
+   * @throws java.io.IOException If the LZ77 code of a block is corrupt.
+   */
+
+  def decompress(zipped: Array[Byte], pool: ForkJoinPool = ForkJoinPool.commonPool()): Array[Byte] = {
+    val index = BlockIndex(zipped)
+    if (index.rawLength > Int.MaxValue - 8)
+      throw new IllegalArgumentException(s"${index.rawLength} bytes do not fit in an array, use decompressFile")
+    val restored = new Array[Byte](index.rawLength.toInt)
+
+    join(CompletableFuture.allOf((0 until index.blockCount).map(block => CompletableFuture.runAsync(() => {
+      val decompressed = decompressBlock(zipped, index, block)
+      System.arraycopy(decompressed, 0, restored, index.rawOffset(block).toInt, decompressed.length)
+    }, pool)): _*))
+
+    restored
+  }
+
+  /**
+   * Decompresses a single block, without touching the others.
+   * @param zipped A .lgh container.
+   * @param block Number of the block, the first being 0.
+   * @return The raw data of that block, i.e. the bytes from block * blockSize of the original data.
+   */
+
+  def decompressBlock(zipped: Array[Byte], block: Int): Array[Byte] = decompressBlock(zipped, BlockIndex(zipped), block)
+
+  private def decompressBlock(zipped: Array[Byte], index: BlockIndex, block: Int): Array[Byte] =
+    decompressBlock(ByteBuffer.wrap(zipped, index.compressedOffset(block).toInt, index.compressedLength(block)), index, block)
+
+  private def decompressBlock(compressed: ByteBuffer, index: BlockIndex, block: Int): Array[Byte] = {
+    val decompressed = LZDecompressor.decompress(HuffmanCodec.reconstruct(compressed).decode(compressed))
+
+    if (decompressed.length != index.rawLength(block))
+      throw new IllegalArgumentException(s"Block $block restored to ${decompressed.length} bytes, expected ${index.rawLength(block)}")
+    decompressed
+  }
+
+  private def compressBlock(raw: Array[Byte], level: CompressionLevel): Array[Byte] = {
+    val lz77Code = LZCompressor.compress(raw, level)
+    HuffmanCodec.construct(lz77Code).encode(lz77Code)
+  }
+
+  // waits for the task, and rethrows what failed it rather than the CompletionException wrapping that, so a corrupt
+  // block reaches the caller as the IOException or IllegalArgumentException it raised
+  private def join[T](task: CompletableFuture[T]): T =
+    try task.join() catch {
+      case e: CompletionException if e.getCause != null => throw e.getCause
+    }
+
+  private def blockCount(length: Long, blockSize: Int): Int = ((length + blockSize - 1) / blockSize).toInt
+
+  private def requireBlockSize(blockSize: Int): Unit =
+    if (blockSize < 1) throw new IllegalArgumentException(s"Block size must be positive: $blockSize")
+
+  /**
+   * Block layout of a container, read from its trailer.
+   */
+
+  case class BlockIndex(blockSize: Int, rawLengths: Array[Int], compressedLengths: Array[Int]) {
+
+    val blockCount: Int = rawLengths.length
+
+    private val rawOffsets = rawLengths.scanLeft(0L)(_ + _)
+    private val compressedOffsets = compressedLengths.scanLeft(0L)(_ + _)
+
+    def rawLength: Long = rawOffsets.last
+
+    def rawLength(block: Int): Int = rawLengths(block)
+
+    def rawOffset(block: Int): Long = rawOffsets(block)
+
+    def compressedLength(block: Int): Int = compressedLengths(block)
+
+    def compressedOffset(block: Int): Long = compressedOffsets(block)
+
+    // number of bytes of the index and the trailer
+    def length: Int = 8 * blockCount + TrailerLength
+
+    def toByteArray: Array[Byte] = {
+      val index = ByteBuffer.allocate(length)
+      (0 until blockCount).foreach(block => index.putInt(rawLengths(block)).putInt(compressedLengths(block)))
+      index.putInt(blockCount).putInt(blockSize).putInt(Magic)
+      index.array()
+    }
+  }
+
+  object BlockIndex {
+
+    def apply(zipped: Array[Byte]): BlockIndex = parse(ByteBuffer.wrap(zipped), zipped.length)
+
+    def apply(channel: FileChannel): BlockIndex = {
+      val size = channel.size()
+      if (size < TrailerLength) throw new IllegalArgumentException("Not a .lgh container")
+
+      val blockCount = read(channel, size - TrailerLength, TrailerLength).getInt(0)
+      val length = 8L * blockCount + TrailerLength
+      if (blockCount < 0 || length > size) throw new IllegalArgumentException("Corrupt block index")
+      parse(read(channel, size - length, length.toInt), size)
+    }
+
+    // reads the index from the end of the buffer, which ends a container of the given length
+    private def parse(buffer: ByteBuffer, containerLength: Long): BlockIndex = {
+      val trailer = buffer.limit() - TrailerLength
+      if (trailer < 0 || buffer.getInt(trailer + 8) != Magic)
+        throw new IllegalArgumentException("Not a .lgh container")
+
+      val blockCount = buffer.getInt(trailer)
+      val indexStart = trailer - 8L * blockCount
+      if (blockCount < 0 || indexStart < 0) throw new IllegalArgumentException("Corrupt block index")
+
+      val rawLengths = Array.tabulate(blockCount)(block => buffer.getInt(indexStart.toInt + 8 * block))
+      val compressedLengths = Array.tabulate(blockCount)(block => buffer.getInt(indexStart.toInt + 8 * block + 4))
+      // negative lengths could cancel out in the sum checked below, and no block holds more than the block size
+      val blockSize = buffer.getInt(trailer + 4)
+      if (blockSize < 1 || rawLengths.exists(length => length < 0 || length > blockSize) || compressedLengths.exists(_ < 0))
+        throw new IllegalArgumentException("Corrupt block index")
+      val index = BlockIndex(blockSize, rawLengths, compressedLengths)
+      if (index.compressedOffset(blockCount) != containerLength - index.length)
+        throw new IllegalArgumentException("Corrupt block index")
+      index
+    }
+
+    private def read(channel: FileChannel, position: Long, length: Int): ByteBuffer = {
+      val buffer = ByteBuffer.allocate(length)
+      while (buffer.hasRemaining)
+        if (channel.read(buffer, position + buffer.position()) < 0) throw new IllegalArgumentException("Corrupt block index")
+      buffer.flip()
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package Compression;
+
+/*
+How hard LZCompressor looks for references, trading speed for ratio:
+    GREEDY  - takes the longest match at each position
+    LAZY    - also looks one position ahead, and leaves a byte as a literal if a longer match starts right after it
+    OPTIMAL - picks the cheapest sequence of literals and references for the whole input, pricing each output byte
+              by how the huffman stage which follows is expected to code it
+ */
+public enum CompressionLevel {
+    GREEDY(MatchFinder.DEFAULT_CHAIN_DEPTH),
+    LAZY(MatchFinder.DEFAULT_CHAIN_DEPTH),
+    OPTIMAL(4 * MatchFinder.DEFAULT_CHAIN_DEPTH);
+
+    private final int chainDepth;
+
+    CompressionLevel(int chainDepth){
+        this.chainDepth = chainDepth;
+    }
+
+    public int getChainDepth(){
+        return chainDepth;
+    }
+}
@@ -0,0 +1,20 @@
+package Compression;
+
+/*
+Receives metrics of the compression pipeline, once registered with CompressionMetrics.addListener.
+Methods are called on the thread which did the work, right after it, so they should be quick and thread safe.
+ */
+public interface CompressionListener {
+
+    // a stage took nanos, turning bytesIn bytes into bytesOut bytes
+    default void stageCompleted(CompressionStage stage, long nanos, long bytesIn, long bytesOut){
+    }
+
+    // the tokens LZCompressor made of one input
+    default void lz77Parsed(LZStatistics statistics){
+    }
+
+    // huffman coded symbols bytes into bits bits, the average code length being bits / symbols
+    default void huffmanCoded(long symbols, long bits){
+    }
+}
@@ -0,0 +1,162 @@
+package Compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+Metrics of the compression pipeline, handed to the registered listeners and recorded as JFR events
+(Compression.Stage, Compression.LZ77 and Compression.Huffman, e.g. with -XX:StartFlightRecording).
+
+The hooks sit at the start and end of each stage rather than in the inner loops. When there is no listener and no
+recording of the events, a stage costs one check of a volatile array and a flag. The token statistics are worked
+out from the finished tokens, and only if somebody takes them.
+ */
+public final class CompressionMetrics {
+    static final long OFF = Long.MIN_VALUE; // start time of a stage nobody listens to
+
+    private static final EventType STAGE_EVENT = EventType.getEventType(StageEvent.class);
+    private static final EventType LZ77_EVENT = EventType.getEventType(LZ77Event.class);
+    private static final EventType HUFFMAN_EVENT = EventType.getEventType(HuffmanEvent.class);
+
+    private static volatile CompressionListener[] listeners = new CompressionListener[0];
+
+    private CompressionMetrics(){
+    }
+
+    public static synchronized void addListener(CompressionListener listener){
+        CompressionListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    public static synchronized void removeListener(CompressionListener listener){
+        listeners = Arrays.stream(listeners).filter(registered -> registered != listener).toArray(CompressionListener[]::new);
+    }
+
+    // start time of a stage, or OFF if nobody listens
+    static long start(){
+        return listeners.length != 0 || STAGE_EVENT.isEnabled() ? System.nanoTime() : OFF;
+    }
+
+    static void stage(CompressionStage stage, long start, long bytesIn, long bytesOut){
+        if(start == OFF) return;
+        long nanos = System.nanoTime() - start;
+        for(CompressionListener listener : listeners) listener.stageCompleted(stage, nanos, bytesIn, bytesOut);
+
+        StageEvent event = new StageEvent();
+        if(event.shouldCommit()) {
+            event.stage = stage.name();
+            event.time = nanos;
+            event.bytesIn = bytesIn;
+            event.bytesOut = bytesOut;
+            event.commit();
+        }
+    }
+
+    static void lz77(byte[] lz77Code){
+        CompressionListener[] current = listeners;
+        if(current.length == 0 && !LZ77_EVENT.isEnabled()) return;
+
+        LZStatistics statistics;
+        try {
+            statistics = LZStatistics.of(lz77Code);
+        } catch(IOException e) {
+            throw new IllegalStateException("LZCompressor wrote unreadable tokens", e);
+        }
+        for(CompressionListener listener : current) listener.lz77Parsed(statistics);
+
+        LZ77Event event = new LZ77Event();
+        if(event.shouldCommit()) {
+            event.literals = statistics.getLiterals();
+            event.references = statistics.getReferences();
+            event.literalRatio = statistics.literalRatio();
+            event.averageLength = statistics.averageLength();
+            event.averageDistance = statistics.averageDistance();
+            event.commit();
+        }
+    }
+
+    static void huffman(long symbols, long bits){
+        CompressionListener[] current = listeners;
+        if(current.length == 0 && !HUFFMAN_EVENT.isEnabled()) return;
+        for(CompressionListener listener : current) listener.huffmanCoded(symbols, bits);
+
+        HuffmanEvent event = new HuffmanEvent();
+        if(event.shouldCommit()) {
+            event.symbols = symbols;
+            event.bits = bits;
+            event.averageCodeLength = symbols == 0 ? 0 : bits / (double) symbols;
+            event.commit();
+        }
+    }
+
+    @Name("Compression.Stage")
+    @Label("Compression Stage")
+    @Category("Compression")
+    @Description("A stage of the LZ77 and huffman pipeline")
+    @StackTrace(false)
+    static final class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Time")
+        @Timespan
+        long time;
+
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+
+        @Label("Bytes Out")
+        @DataAmount
+        long bytesOut;
+    }
+
+    @Name("Compression.LZ77")
+    @Label("LZ77 Tokens")
+    @Category("Compression")
+    @Description("Make-up of the tokens of one input, see LZStatistics")
+    @StackTrace(false)
+    static final class LZ77Event extends Event {
+        @Label("Literals")
+        long literals;
+
+        @Label("References")
+        long references;
+
+        @Label("Literal Ratio")
+        double literalRatio;
+
+        @Label("Average Length")
+        double averageLength;
+
+        @Label("Average Distance")
+        double averageDistance;
+    }
+
+    @Name("Compression.Huffman")
+    @Label("Huffman Coding")
+    @Category("Compression")
+    @Description("Symbols coded with one huffman code")
+    @StackTrace(false)
+    static final class HuffmanEvent extends Event {
+        @Label("Symbols")
+        long symbols;
+
+        @Label("Bits")
+        long bits;
+
+        @Label("Average Code Length")
+        double averageCodeLength;
+    }
+}
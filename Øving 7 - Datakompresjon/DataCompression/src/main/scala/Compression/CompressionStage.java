@@ -0,0 +1,17 @@
+package Compression;
+
+/*
+Timed stages of the compression pipeline, as reported to a CompressionListener:
+    LZ77_COMPRESS    - parsing the input into tokens (LZCompressor), bytes in are raw and bytes out are tokens
+    LZ77_DECOMPRESS  - restoring the input from tokens (LZDecompressor)
+    HUFFMAN_BUILD    - counting the bytes and building the code (HuffmanCodec.construct and train), 128 bytes out
+    HUFFMAN_ENCODE   - writing the codes of the input, without header or trailer
+    HUFFMAN_DECODE   - reading the codes back
+ */
+public enum CompressionStage {
+    LZ77_COMPRESS,
+    LZ77_DECOMPRESS,
+    HUFFMAN_BUILD,
+    HUFFMAN_ENCODE,
+    HUFFMAN_DECODE
+}
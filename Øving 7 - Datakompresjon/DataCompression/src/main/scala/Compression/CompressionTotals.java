@@ -0,0 +1,81 @@
+package Compression;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Listener summing up the metrics of every stage since it was registered, e.g. to print after a run:
+
+        CompressionTotals totals = new CompressionTotals();
+        CompressionMetrics.addListener(totals);
+        ...
+        System.out.println(totals);
+ */
+public class CompressionTotals implements CompressionListener {
+    private final LongAdder[] calls = adders();
+    private final LongAdder[] nanos = adders();
+    private final LongAdder[] bytesIn = adders();
+    private final LongAdder[] bytesOut = adders();
+    private final LZStatistics tokens = new LZStatistics();
+    private final LongAdder symbols = new LongAdder();
+    private final LongAdder bits = new LongAdder();
+
+    private static LongAdder[] adders(){
+        LongAdder[] adders = new LongAdder[CompressionStage.values().length];
+        for(int k = 0; k < adders.length; k++) adders[k] = new LongAdder();
+        return adders;
+    }
+
+    @Override
+    public void stageCompleted(CompressionStage stage, long nanos, long bytesIn, long bytesOut){
+        calls[stage.ordinal()].increment();
+        this.nanos[stage.ordinal()].add(nanos);
+        this.bytesIn[stage.ordinal()].add(bytesIn);
+        this.bytesOut[stage.ordinal()].add(bytesOut);
+    }
+
+    @Override
+    public void lz77Parsed(LZStatistics statistics){
+        tokens.add(statistics);
+    }
+
+    @Override
+    public void huffmanCoded(long symbols, long bits){
+        this.symbols.add(symbols);
+        this.bits.add(bits);
+    }
+
+    public long nanos(CompressionStage stage){
+        return nanos[stage.ordinal()].sum();
+    }
+
+    // megabytes in per second spent in the stage, summed over threads
+    public double throughput(CompressionStage stage){
+        long time = nanos(stage);
+        return time == 0 ? 0 : bytesIn[stage.ordinal()].sum() * 1e3 / time;
+    }
+
+    public double averageCodeLength(){
+        long count = symbols.sum();
+        return count == 0 ? 0 : bits.sum() / (double) count;
+    }
+
+    public LZStatistics tokens(){
+        LZStatistics copy = new LZStatistics();
+        copy.add(tokens);
+        return copy;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder(String.format("%-16s %8s %12s %14s %14s %10s%n",
+                "Stage", "Calls", "Time (ms)", "Bytes in", "Bytes out", "MB/s"));
+        for(CompressionStage stage : CompressionStage.values()) {
+            int k = stage.ordinal();
+            if(calls[k].sum() == 0) continue;
+            builder.append(String.format("%-16s %8d %12.1f %14d %14d %10.1f%n", stage, calls[k].sum(),
+                    nanos[k].sum() / 1e6, bytesIn[k].sum(), bytesOut[k].sum(), throughput(stage)));
+        }
+        builder.append(tokens).append(String.format("%nhuffman average code length: %.3f bits", averageCodeLength()));
+        return builder.toString();
+    }
+}
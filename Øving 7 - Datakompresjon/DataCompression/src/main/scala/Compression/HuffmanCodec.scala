@@ -1,80 +1,235 @@
 package Compression
 
 import java.nio.ByteBuffer
+import java.util.concurrent.{CompletableFuture, ForkJoinPool, ForkJoinTask}
+import java.util.zip.CRC32
 
 import scala.collection.mutable
-import scala.collection.mutable.ListBuffer
+import scala.jdk.CollectionConverters._
 
-class HuffmanCodec private (byteFrequencyTable: Seq[(Byte, Int)]) {
+/**
+ * Canonical huffman codec. The codes follow from the code lengths alone, so the header only holds the
+ * length of the raw data (4 bytes) and the code length of every byte, packed two to a byte (128 bytes).
+ * The encoded payload follows the header, and last comes the number of payload bits (8 bytes).
+ * @param codeLengths Code length of every byte, indexed by its unsigned value. 0 means the byte is absent.
+ */
 
-  val root: Node = {
-    val huffmanTree = new mutable.PriorityQueue[Node]()((one, two) => two.frequency - one.frequency)
+class HuffmanCodec private (codeLengths: Array[Int]) {
+  import HuffmanCodec._
 
-    byteFrequencyTable
-      .map(tuple => Node(tuple._2, Left(tuple._1)))
-      .foreach(huffmanTree.addOne)
+  // canonical code of every byte, indexed by its unsigned value
+  private val codes: Array[Int] = canonicalCodes(codeLengths)
 
-    while(huffmanTree.size > 1){
-      val lowestWeight = huffmanTree.dequeue()
-      val secondLowest = huffmanTree.dequeue()
+  private lazy val decodingTable: Array[Int] = constructDecodingTable()
 
-      huffmanTree
-        .addOne(Node(lowestWeight.frequency + secondLowest.frequency, Right(Some(lowestWeight), Some(secondLowest))))
-    }
-    huffmanTree.dequeue()
+  /**
+   * Identifies the code table among shared ones, see SharedHuffmanTables. Follows from the code lengths alone,
+   * so codecs made from the same table agree on it.
+   */
+
+  lazy val id: Int = {
+    val checksum = new CRC32()
+    checksum.update(table)
+    checksum.getValue.toInt
   }
 
+  /**
+   * Encodes the data as: header | payload | number of payload bits (8 bytes).
+   * The bit count is stored explicitly, as the last payload byte may be padded.
+   * @param raw Data consisting only of bytes this codec was constructed from.
+   * @return The header, the encoded data and the bit count trailer.
+   */
+
   def encode(raw: Array[Byte]): Array[Byte] = {
-    val encodedBuffer = raw.map(byte => byte.toString)
-    root.encode("", raw, (path, index) => encodedBuffer(index) = path)
+    val encoded = ByteBuffer.allocate(encodedLength(raw).toInt)
+    encode(raw, encoded)
+    encoded.array()
+  }
+
+  /**
+   * Encodes the data into any buffer, e.g. a direct or memory mapped one, with the same layout as encode(raw).
+   * @param raw Data consisting only of bytes this codec was constructed from.
+   * @param target Buffer with at least encodedLength(raw) bytes remaining.
+   */
 
-    constructHeader()
-      .appendedAll(BigInt(encodedBuffer.mkString(""), 2).toByteArray)
+  def encode(raw: Array[Byte], target: ByteBuffer): Unit = {
+    target.put(constructHeader(raw.length))
+    target.putLong(encodePayload(raw, target))
   }
 
-  def decode(zipped: Array[Byte]): Array[Byte] = {
-    val prefixes = BigInt(removeHeader(zipped)).toString(2).iterator
-    val decodedBuffer = new ListBuffer[Byte]
-    var currentNode = root
+  /**
+   * Writes the codes of the data alone, padded to whole bytes.
+   * @return Number of bits written, before the padding.
+   */
 
-    prefixes.foreach {
-      case '0' => currentNode.pointer match {
-        case Left(value) =>
-          decodedBuffer.append(value)
-          currentNode = root.left().get
-        case Right(Some(leftChild) -> _) => currentNode = leftChild
-        case _ => throw new UnknownError("Could not parse coding")
-      }
-      case '1' => currentNode.pointer match {
-        case Left(value) =>
-          decodedBuffer.append(value)
-          currentNode = root.right().get
-        case Right(_ -> Some(rightChild)) => currentNode = rightChild
-        case _ => throw new UnknownError("Could not parse coding")
+  private[Compression] def encodePayload(raw: Array[Byte], target: ByteBuffer): Long = {
+    val timer = CompressionMetrics.start()
+    // codes are shifted into the accumulator, and whole words are written from its top as soon as they are complete.
+    // as codes are at most 15 bits, less than 47 bits are ever pending
+    var accumulator = 0L
+    var pending = 0
+    var bits = 0L
+    var i = 0
+    while (i < raw.length) {
+      val symbol = raw(i) & 0xff
+      val length = codeLengths(symbol)
+      if (length == 0) throw new IllegalArgumentException(s"Byte $symbol is not in the code table")
+
+      accumulator = (accumulator << length) | codes(symbol)
+      pending += length
+      if (pending >= 32) {
+        pending -= 32
+        target.putInt((accumulator >>> pending).toInt)
       }
+      bits += length
+      i += 1
     }
+    while (pending >= 8) {
+      pending -= 8
+      target.put((accumulator >>> pending).toByte)
+    }
+    if (pending > 0) target.put((accumulator << (8 - pending)).toByte)
 
-    decodedBuffer.append(currentNode.pointer match {
-      case Left(value) => value
-      case Right(_) => 0
-    })
+    CompressionMetrics.stage(CompressionStage.HUFFMAN_ENCODE, timer, raw.length, (bits + 7) >>> 3)
+    CompressionMetrics.huffman(raw.length, bits)
+    bits
+  }
+
+  /**
+   * @return Exact number of bytes encode(raw) produces.
+   */
+
+  def encodedLength(raw: Array[Byte]): Long = HeaderLength + payloadLength(raw) + 8
+
+  /**
+   * @return Exact number of bytes encodePayload(raw, target) writes.
+   */
 
-    decodedBuffer.toArray
+  private[Compression] def payloadLength(raw: Array[Byte]): Long = {
+    var bits = 0L
+    var i = 0
+    while (i < raw.length) {
+      bits += codeLengths(raw(i) & 0xff)
+      i += 1
+    }
+    (bits + 7) >>> 3
+  }
+
+  def decode(zipped: Array[Byte]): Array[Byte] = decode(ByteBuffer.wrap(zipped))
+
+  /**
+   * Decodes the remaining bytes of any buffer, e.g. a memory mapped file region, without copying them.
+   */
+
+  def decode(zipped: ByteBuffer): Array[Byte] = {
+    val buffer = zipped.slice()
+    val decoded = new Array[Byte](checkedRawLength(buffer))
+    val end = buffer.limit() - 8
+    if (decodePayload(buffer, HeaderLength, end, decoded) != buffer.getLong(end))
+      throw new IllegalArgumentException("Could not parse coding")
+    decoded
+  }
+
+  /**
+   * Decodes codes from the bytes between start and end until decoded is full.
+   * @return Number of bits the codes took.
+   */
+
+  private[Compression] def decodePayload(buffer: ByteBuffer, start: Int, end: Int, decoded: Array[Byte]): Long = {
+    val timer = CompressionMetrics.start()
+    val table = decodingTable
+
+    // unread bits are kept at the top of bitBuffer. zeros are read past the payload, they are never consumed
+    var bitBuffer = 0L
+    var bitCount = 0
+    var position = start
+    var consumed = 0L
+    var i = 0
+    while (i < decoded.length) {
+      if (bitCount <= 32) {
+        if (position + 4 <= end) {
+          bitBuffer |= (buffer.getInt(position) & 0xffffffffL) << (32 - bitCount)
+          position += 4
+          bitCount += 32
+        } else while (bitCount <= 56) {
+          if (position < end) bitBuffer |= (buffer.get(position) & 0xffL) << (56 - bitCount)
+          position += 1
+          bitCount += 8
+        }
+      }
+
+      var entry = table((bitBuffer >>> (64 - PrimaryBits)).toInt)
+      if (entry < 0) {
+        val subBits = entry & 0xf
+        entry = table(((entry & LinkMask) >>> 4) + ((bitBuffer << PrimaryBits) >>> (64 - subBits)).toInt)
+      }
+
+      val length = entry & 0xf
+      if (length == 0) throw new IllegalArgumentException("Could not parse coding")
+
+      decoded(i) = (entry >>> 4).toByte
+      bitBuffer <<= length
+      bitCount -= length
+      consumed += length
+      i += 1
+    }
+    CompressionMetrics.stage(CompressionStage.HUFFMAN_DECODE, timer, end - start, decoded.length)
+    consumed
   }
 
   def removeHeader(zipped: Array[Byte]): Array[Byte] = zipped
-      .drop(ByteBuffer.wrap(zipped.slice(0, 4)).getInt + 4)
+      .drop(HeaderLength)
+
+  def constructHeader(rawLength: Int): Array[Byte] =
+    ByteBuffer.allocate(HeaderLength).putInt(rawLength).put(table).array()
+
+  /**
+   * The code length of every byte, packed two to a byte (128 bytes), from which fromTable makes the same codec.
+   */
+
+  def table: Array[Byte] = Array.tabulate(TableLength)(index =>
+    (codeLengths(2 * index) << 4 | codeLengths(2 * index + 1)).toByte)
+
+  /*
+  Two level decoding table. The first PrimaryBits of the input index the primary table, where codes no longer
+  than PrimaryBits fill every entry they prefix. Longer codes are resolved by following a link to a secondary
+  table, indexed by the bits after the prefix. Entries are:
+    symbol << 4 | code length     a symbol (0 length marks bits no code starts with)
+    LinkFlag | offset << 4 | bits    a secondary table at offset, indexed by the next bits
+   */
+  private def constructDecodingTable(): Array[Int] = {
+    val subBits = new Array[Int](1 << PrimaryBits)
+    for (symbol <- 0 until 256 if codeLengths(symbol) > PrimaryBits) {
+      val prefix = codes(symbol) >>> (codeLengths(symbol) - PrimaryBits)
+      subBits(prefix) = math.max(subBits(prefix), codeLengths(symbol) - PrimaryBits)
+    }
+
+    val offsets = new Array[Int](1 << PrimaryBits)
+    var size = 1 << PrimaryBits
+    for (prefix <- subBits.indices if subBits(prefix) > 0) {
+      offsets(prefix) = size
+      size += 1 << subBits(prefix)
+    }
 
-  def constructHeader(): Array[Byte] = {
-    val frequencyTable = byteFrequencyTable
-      .map(tuple => tuple._1 -> ByteBuffer.allocate(4).putInt(tuple._2).array())
-      .flatten(tuple => tuple._2.prepended(tuple._1))
-      .toArray
+    val table = new Array[Int](size)
+    for (prefix <- subBits.indices if subBits(prefix) > 0)
+      table(prefix) = LinkFlag | offsets(prefix) << 4 | subBits(prefix)
 
-    frequencyTable
-      .prependedAll(ByteBuffer.allocate(4)
-        .putInt(frequencyTable.length)
-        .array())
+    for (symbol <- 0 until 256 if codeLengths(symbol) > 0) {
+      val length = codeLengths(symbol)
+      val entry = symbol << 4 | length
+      if (length <= PrimaryBits) {
+        val first = codes(symbol) << (PrimaryBits - length)
+        java.util.Arrays.fill(table, first, first + (1 << (PrimaryBits - length)), entry)
+      } else {
+        val prefix = codes(symbol) >>> (length - PrimaryBits)
+        val suffixLength = length - PrimaryBits
+        val suffix = codes(symbol) & ((1 << suffixLength) - 1)
+        val first = offsets(prefix) + (suffix << (subBits(prefix) - suffixLength))
+        java.util.Arrays.fill(table, first, first + (1 << (subBits(prefix) - suffixLength)), entry)
+      }
+    }
+    table
   }
 
   @deprecated("Using native API instead, i.e. BigInt and ByteBuffer class.")
@@ -88,37 +243,19 @@ class HuffmanCodec private (byteFrequencyTable: Seq[(Byte, Int)]) {
     if(state) return (num | 1 << (7 - bit)).toByte
     (num & ~(1 << bit)).toByte
   }
+}
+object HuffmanCodec {
 
-  case class Node(frequency: Int, pointer: Either[Byte, (Option[Node], Option[Node])]) extends Ordered[Node] {
-
-    override def compare(that: Node): Int = this.frequency - that.frequency
-
-    def left(): Option[Node] = pointer match {
-      case Left(_) => None
-      case Right(node) => node._1
-    }
+  val MaxCodeLength = 15
+  val TableLength = 128
+  val HeaderLength: Int = 4 + TableLength
 
-    def right(): Option[Node] = pointer match {
-      case Left(_) => None
-      case Right(node) => node._2
-    }
+  // the histogram is counted in parallel in slices of at least this many bytes
+  private val HistogramSlice = 1 << 20
 
-    def encode(path: String, raw: Array[Byte], consumer: (String, Int) => ()): Unit =
-      pointer match {
-        case Left(value) => raw
-          .zipWithIndex
-          .foreach(tuple => if(tuple._1 == value) consumer(path, tuple._2))
-        case Right(Some(leftNode) -> Some(rightNode)) =>
-          leftNode.encode(path.concat("0"), raw, consumer)
-          rightNode.encode(path.concat("1"), raw, consumer)
-        case Right(Some(leftNode) -> None) =>
-          leftNode.encode(path.concat("0"), raw, consumer)
-        case Right(None -> Some(rightNode)) =>
-          rightNode.encode(path.concat("1"), raw, consumer)
-      }
-  }
-}
-object HuffmanCodec {
+  private val PrimaryBits = 10
+  private val LinkFlag = Int.MinValue
+  private val LinkMask = Int.MaxValue
 
   /**
    * Creates a new codec huffman-codec tailored to this file.
@@ -126,10 +263,93 @@ object HuffmanCodec {
    * @return A huffman codec.
    */
 
-  def construct(rawData: Array[Byte]): HuffmanCodec = new HuffmanCodec(rawData
-    .groupBy(byte => byte)
-    .map(tuple => tuple._1  -> tuple._2.length)
-    .toSeq)
+  def construct(rawData: Array[Byte]): HuffmanCodec = {
+    val timer = CompressionMetrics.start()
+    val codec = fromHistogram(largeHistogram(rawData))
+    CompressionMetrics.stage(CompressionStage.HUFFMAN_BUILD, timer, rawData.length, TableLength)
+    codec
+  }
+
+  /**
+   * Creates a codec for data with these byte frequencies, see histogram. Bytes with no occurrences get no code.
+   */
+
+  def fromHistogram(histogram: Array[Long]): HuffmanCodec = new HuffmanCodec(codeLengths(histogram))
+
+  /**
+   * Creates one codec for many small payloads similar to the samples, to be shared by reference instead of
+   * embedding it in each of them (see SharedHuffmanTables). Every byte gets a code, also bytes the samples lack,
+   * so that any payload can be encoded.
+   */
+
+  def train(samples: Iterable[Array[Byte]]): HuffmanCodec = {
+    val timer = CompressionMetrics.start()
+    // bytes the samples lack are priced as if seen once
+    val total = Array.fill(256)(1L)
+    samples.foreach(sample => {
+      val counts = largeHistogram(sample)
+      for (symbol <- 0 until 256) total(symbol) += counts(symbol)
+    })
+    val codec = fromHistogram(total)
+    CompressionMetrics.stage(CompressionStage.HUFFMAN_BUILD, timer, total.sum - 256, TableLength)
+    codec
+  }
+
+  /**
+   * Same as train(samples), for samples in a Java collection.
+   */
+
+  def train(samples: java.lang.Iterable[Array[Byte]]): HuffmanCodec = train(samples.asScala)
+
+  /**
+   * Number of occurrences of every byte, indexed by its unsigned value.
+   */
+
+  def histogram(data: Array[Byte]): Array[Long] = histogram(data, 0, data.length)
+
+  /**
+   * Same as histogram(data), but large data is counted in slices on the pool.
+   */
+
+  def histogram(data: Array[Byte], pool: ForkJoinPool): Array[Long] = {
+    val slices = math.min(pool.getParallelism, data.length / HistogramSlice)
+    if (slices <= 1) return histogram(data)
+
+    val sliceLength = data.length / slices
+    val counts = (0 until slices).map(slice => CompletableFuture.supplyAsync(() =>
+      histogram(data, slice * sliceLength, if (slice == slices - 1) data.length else (slice + 1) * sliceLength), pool))
+
+    val total = new Array[Long](256)
+    counts.foreach(count => {
+      val part = count.join()
+      for (symbol <- 0 until 256) total(symbol) += part(symbol)
+    })
+    total
+  }
+
+  // large data is counted on the common pool, unless this already runs on a pool, e.g. for a block of BlockCodec,
+  // whose workers are busy with the other blocks
+  private def largeHistogram(data: Array[Byte]): Array[Long] =
+    if (ForkJoinTask.inForkJoinPool()) histogram(data) else histogram(data, ForkJoinPool.commonPool())
+
+  // counts into four tables in turn, so that a run of one byte value does not wait on its own increments
+  private def histogram(data: Array[Byte], from: Int, to: Int): Array[Long] = {
+    val counts = new Array[Int](4 * 256)
+    var i = from
+    while (i + 3 < to) {
+      counts(data(i) & 0xff) += 1
+      counts(256 + (data(i + 1) & 0xff)) += 1
+      counts(512 + (data(i + 2) & 0xff)) += 1
+      counts(768 + (data(i + 3) & 0xff)) += 1
+      i += 4
+    }
+    while (i < to) {
+      counts(data(i) & 0xff) += 1
+      i += 1
+    }
+    Array.tabulate(256)(symbol =>
+      counts(symbol).toLong + counts(256 + symbol) + counts(512 + symbol) + counts(768 + symbol))
+  }
 
   /**
    * Invoked only if provided data is previously compressed by this huffman-implementation.
@@ -137,13 +357,115 @@ object HuffmanCodec {
    * @return A reconstructed codec.
    */
 
-  def reconstruct(zipped: Array[Byte]): HuffmanCodec = {
-    val metaDataSpan = ByteBuffer.wrap(zipped.slice(0, 4)).getInt
+  def reconstruct(zipped: Array[Byte]): HuffmanCodec = reconstruct(ByteBuffer.wrap(zipped))
 
-    new HuffmanCodec(zipped
-      .slice(4, metaDataSpan + 4)
-      .grouped(5)
-      .map(bytes => bytes.head -> ByteBuffer.wrap(bytes.tail).getInt)
-      .toSeq)
+  def reconstruct(zipped: ByteBuffer): HuffmanCodec = {
+    checkedRawLength(zipped)
+    val table = new Array[Byte](TableLength)
+    zipped.get(zipped.position() + 4, table)
+    fromTable(table)
   }
-}
\ No newline at end of file
+
+  /**
+   * The raw length in the header of the encoded data remaining in the buffer, checked against the bit count in its
+   * trailer, as every byte takes at least one bit. The check comes before any array is made from the length.
+   * @throws IllegalArgumentException If the data is too short, or the lengths do not fit together.
+   */
+
+  private def checkedRawLength(zipped: ByteBuffer): Int = {
+    if (zipped.remaining() < HeaderLength + 8) throw new IllegalArgumentException("Could not parse coding")
+    val rawLength = zipped.getInt(zipped.position())
+    val bits = zipped.getLong(zipped.limit() - 8)
+    if (bits < 0 || bits > 8L * (zipped.remaining() - HeaderLength - 8) || rawLength < 0 || rawLength > bits)
+      throw new IllegalArgumentException("Could not parse coding")
+    rawLength
+  }
+
+  /**
+   * Creates the codec whose table this is, see HuffmanCodec.table.
+   */
+
+  def fromTable(table: Array[Byte]): HuffmanCodec = {
+    if (table.length != TableLength) throw new IllegalArgumentException(s"Code table of ${table.length} bytes")
+    val codeLengths = table.flatMap(byte => Array(byte >> 4 & 0xf, byte & 0xf))
+
+    val kraftSum = codeLengths.filter(_ > 0).map(length => 1 << (MaxCodeLength - length)).sum
+    if (kraftSum > (1 << MaxCodeLength)) throw new IllegalArgumentException("Could not parse coding")
+
+    new HuffmanCodec(codeLengths)
+  }
+
+  /**
+   * Code lengths of an optimal huffman tree over the frequencies, limited to MaxCodeLength.
+   */
+
+  private def codeLengths(histogram: Array[Long]): Array[Int] = {
+    val lengths = new Array[Int](256)
+    val huffmanTree = new mutable.PriorityQueue[Node]()((one, two) => java.lang.Long.compare(two.frequency, one.frequency))
+
+    for (symbol <- 0 until 256 if histogram(symbol) > 0)
+      huffmanTree.addOne(Node(histogram(symbol), Left(symbol.toByte)))
+
+    while(huffmanTree.size > 1){
+      val lowestWeight = huffmanTree.dequeue()
+      val secondLowest = huffmanTree.dequeue()
+
+      huffmanTree
+        .addOne(Node(lowestWeight.frequency + secondLowest.frequency, Right(lowestWeight, secondLowest)))
+    }
+    huffmanTree.headOption.foreach(_.assignLengths(0, lengths))
+
+    if (lengths.max > MaxCodeLength) limitLengths(lengths, histogram)
+    lengths
+  }
+
+  /*
+  Clamps every length to MaxCodeLength. This breaks the Kraft inequality (the sum of 2^-length must be at most 1),
+  which is restored by lengthening the longest codes below the limit, the least frequent first.
+   */
+  private def limitLengths(lengths: Array[Int], histogram: Array[Long]): Unit = {
+    val byRarity = (0 until 256).filter(histogram(_) > 0).sortBy(histogram(_))
+    byRarity.foreach(symbol => lengths(symbol) = math.min(lengths(symbol), MaxCodeLength))
+
+    var kraftSum = byRarity.map(symbol => 1 << (MaxCodeLength - lengths(symbol))).sum
+    while (kraftSum > (1 << MaxCodeLength)) {
+      val symbol = byRarity
+        .filter(symbol => lengths(symbol) < MaxCodeLength)
+        .maxBy(symbol => lengths(symbol))
+      lengths(symbol) += 1
+      kraftSum -= 1 << (MaxCodeLength - lengths(symbol))
+    }
+  }
+
+  /*
+  Codes are assigned in order of length, and by byte value within a length, each one being the previous code plus one
+  (shifted left when the length grows).
+   */
+  private def canonicalCodes(lengths: Array[Int]): Array[Int] = {
+    val lengthCount = new Array[Int](MaxCodeLength + 1)
+    lengths.filter(_ > 0).foreach(length => lengthCount(length) += 1)
+
+    val nextCode = new Array[Int](MaxCodeLength + 1)
+    for (length <- 1 to MaxCodeLength)
+      nextCode(length) = (nextCode(length - 1) + lengthCount(length - 1)) << 1
+
+    val codes = new Array[Int](256)
+    for (symbol <- 0 until 256 if lengths(symbol) > 0) {
+      codes(symbol) = nextCode(lengths(symbol))
+      nextCode(lengths(symbol)) += 1
+    }
+    codes
+  }
+
+  private case class Node(frequency: Long, pointer: Either[Byte, (Node, Node)]) {
+
+    def assignLengths(depth: Int, lengths: Array[Int]): Unit =
+      pointer match {
+        // a lone symbol still needs one bit
+        case Left(value) => lengths(value & 0xff) = math.max(depth, 1)
+        case Right(leftNode -> rightNode) =>
+          leftNode.assignLengths(depth + 1, lengths)
+          rightNode.assignLengths(depth + 1, lengths)
+      }
+  }
+}
@@ -4,105 +4,194 @@ import java.io.*;
 import java.nio.ByteBuffer;
 
 public class LZCompressor {
-    public static final int MIN_REF_LEN = 6; // backwards references must at least be this long
+    public static final int MIN_REF_LEN = 4; // backwards references must at least be this long
+    private static final int NICE_REF_LEN = 32; // the optimal parse tries every length up to this, longer only in full
 
-    // "left" part of short is in b[0], "right" part in b[1]
-    public static byte[] splitShortToBytes(short s){
-        byte[] b = new byte[2];
+    /*
+    Compresses the data into the form (example input: hello_ello, tokens are described in LZTokenWriter)
+                +--------+-------+-----+-----+-----+-----+-----+-----+----------+-------+----------+
+        index-> |   0    |   1   |  2  |  3  |  4  |  5  |  6  |  7  |    8     |   9   |    10    |
+                +--------+-------+-----+-----+-----+-----+-----+-----+----------+-------+----------+
+      content-> | length | token |  h  |  e  |  l  |  l  |  o  |  _  | distance | token | distance |
+                |  (10)  | (6|0) |     |     |     |     |     |     |    (5)   | (0|0) |    (0)   |
+                +--------+-------+-----+-----+-----+-----+-----+-----+----------+-------+----------+
+    The length of the original data is a varint, and the last token never has a reference.
+     */
+    private static byte[] toCompressedArray(ByteBuffer data, MatchFinder finder, CompressionLevel level) throws IOException {
+        return toCompressedArray(data, 0, finder, null, level);
+    }
 
-        b[0] = (byte)(s & 0xff);
-        b[1] = (byte)((s >> 8) & 0xff);
+    // compresses the data from start on. the positions before start are already in the finder, so references may point
+    // back into them. a finder with such positions is a copy of original (see LZDictionary), which it is rolled back to
+    // if the parse needs a trial run
+    static byte[] toCompressedArray(ByteBuffer data, int start, MatchFinder finder, MatchFinder original, CompressionLevel level){
+        long timer = CompressionMetrics.start();
+        LZTokenWriter tokens = new LZTokenWriter((data.limit() - start) / 2);
+        tokens.writeVarint(data.limit() - start);
+
+        switch(level) {
+            case LAZY:
+                traverseLazy(data, start, finder, tokens);
+                break;
+            case OPTIMAL:
+                traverseOptimal(data, start, finder, original, tokens);
+                break;
+            default:
+                traverse(data, start, finder, tokens);
+        }
+        byte[] compressed = tokens.toByteArray();
+        CompressionMetrics.stage(CompressionStage.LZ77_COMPRESS, timer, data.limit() - start, compressed.length);
+        CompressionMetrics.lz77(compressed);
+        return compressed;
+    }
 
-        return b;
+    // goes through the array from start, and at every position takes the longest matching segment found earlier
+    // if it is long enough (>= MIN_REF_LEN). bytes not covered by a reference are written as literals
+    private static void traverse(ByteBuffer array, int start, MatchFinder finder, LZTokenWriter tokens){
+        int n = array.limit();
+        int literalStart = start;
+        int len;
+        for(int i = start; i < n; i += len) {
+            len = finder.longestMatch(array, i, n, Integer.MAX_VALUE);
+            if(len >= MIN_REF_LEN) {
+                tokens.write(array, literalStart, i - literalStart, finder.distance(), len);
+                literalStart = i + len;
+            } else len = 1;
+
+            // every position is indexed, also those covered by the reference, so later matches may point into it
+            finder.insertRange(array, i, i + len, n);
+        }
+        tokens.write(array, literalStart, n - literalStart, 0, 0);
     }
 
-    /*
-    Compresses the data into the form (example input: hello_ello)
-                +-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+
-        index-> |  0  |  1  |  2  |  3  |  4  |  5  |  6  |  7  |  8  |  9  |  10 |  11 |
-                +-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+
-      content-> |     6     |  h  |  e  |  l  |  l  |  o  |  _  |     5     |     4     |
-                +-----------+-----+-----+-----+-----+-----+-----+-----+-----+-----+-----+
-     */
-    private static byte[] toCompressedArray(byte[] data, short[][] references) throws IOException {
-        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
-
-        // puts four bytes with the length of the original data at the start, used in decompression
-        ByteBuffer bb = ByteBuffer.allocate(Integer.BYTES);
-        bb.putInt(data.length);
-        byte[] lenBytes = new byte[4];
-        bb.get(0, lenBytes);
-        compressed.write(lenBytes);
-
-        // manually places the first number of uncompressed bytes (bad)
-        int toNextCounter = 0;
-        while (++toNextCounter < references.length && references[toNextCounter][0] == 0);
-        compressed.write(splitShortToBytes((short) (toNextCounter))[0]);
-        compressed.write(splitShortToBytes((short) (toNextCounter))[1]);
-
-        byte[] b;
-        for(int i = 0; i < references.length; i++){
-            if(references[i][0] == 0){
-                compressed.write(data[i]); // copies from source when no reference present
+    // like traverse, but defers a match by one position if a longer one starts at the next byte
+    private static void traverseLazy(ByteBuffer array, int start, MatchFinder finder, LZTokenWriter tokens){
+        int n = array.limit();
+        int literalStart = start;
+        int len = 0;
+        int distance = 0;
+        boolean deferred = false;
+
+        for(int i = start; i < n;) {
+            if(!deferred) {
+                len = finder.longestMatch(array, i, n, Integer.MAX_VALUE);
+                distance = finder.distance();
+            }
+            deferred = false;
+            finder.insert(array, i, n);
+
+            if(len >= MIN_REF_LEN && i + 1 < n) {
+                int next = finder.longestMatch(array, i + 1, n, Integer.MAX_VALUE);
+                if(next > len) {
+                    // i becomes a literal, and the longer match is considered at i + 1
+                    len = next;
+                    distance = finder.distance();
+                    deferred = true;
+                    i++;
+                    continue;
+                }
             }
-            else{
-                // inserts backwards distance to reference and length of referenced segment
-                b = splitShortToBytes(references[i][0]);
-                compressed.write(b[0]);
-                compressed.write(b[1]);
-                b = splitShortToBytes(references[i][1]);
-                compressed.write(b[0]);
-                compressed.write(b[1]);
-
-                // counts distance to next reference
-                toNextCounter = 0;
-                while (++toNextCounter + i + references[i][1] < references.length
-                        && references[i + references[i][1] + toNextCounter][0] == 0);
-                compressed.write(splitShortToBytes((short) (toNextCounter))[0]);
-                compressed.write(splitShortToBytes((short) (toNextCounter))[1]);
-
-                i += references[i][1] - 1;
+
+            if(len >= MIN_REF_LEN) {
+                tokens.write(array, literalStart, i - literalStart, distance, len);
+                finder.insertRange(array, i + 1, i + len, n);
+                i += len;
+                literalStart = i;
+            } else i++;
+        }
+        tokens.write(array, literalStart, n - literalStart, 0, 0);
+    }
+
+    // finds the cheapest parse by dynamic programming over the positions, where cost[k] is the lowest
+    // estimated number of bits to encode the first k bytes from start. from every position the parse either emits
+    // a literal, or a reference of any length up to the longest match
+    private static void traverseOptimal(ByteBuffer array, int start, MatchFinder finder, MatchFinder original, LZTokenWriter tokens){
+        int n = array.limit();
+        float[] bits;
+        if(original == null) bits = huffmanCostEstimate(array, start, new MatchFinder(finder.getWindowSize(), MatchFinder.DEFAULT_CHAIN_DEPTH));
+        else {
+            // the trial parse needs the positions before start, so it runs on the finder itself and is undone after
+            bits = huffmanCostEstimate(array, start, finder);
+            finder.rollback(original, array, start, n, n);
+        }
+        float tokenBits = bits[256];
+
+        float[] cost = new float[n - start + 1];
+        int[] length = new int[n - start + 1];   // length of the reference ending the cheapest parse up to k, 0 for a literal
+        int[] distance = new int[n - start + 1];
+        java.util.Arrays.fill(cost, Float.MAX_VALUE);
+        cost[0] = 0;
+
+        for(int i = start; i < n; i++) {
+            int k = i - start;
+            float literal = cost[k] + bits[array.get(i) & 0xff];
+            if(literal < cost[k + 1]) {
+                cost[k + 1] = literal;
+                length[k + 1] = 0;
+            }
+
+            int longest = finder.longestMatch(array, i, n, Integer.MAX_VALUE);
+            int dist = finder.distance();
+            finder.insert(array, i, n);
+            if(longest < MIN_REF_LEN) continue;
+
+            float base = cost[k] + tokenBits + varintBits(bits, dist);
+            for(int len = MIN_REF_LEN; len <= longest; len = len < NICE_REF_LEN || len == longest ? len + 1 : longest) {
+                int extension = len - MIN_REF_LEN - LZTokenWriter.NIBBLE_MAX;
+                float total = base + (extension >= 0 ? varintBits(bits, extension) : 0);
+                if(total < cost[k + len]) {
+                    cost[k + len] = total;
+                    length[k + len] = len;
+                    distance[k + len] = dist;
+                }
             }
         }
 
-        return compressed.toByteArray();
-    }
-
-    // goes through the entire array and returns an array of "references" which are on the following form:
-    // if a long enough (>= MIN_REF_LEN) matching segment is found:
-    // reference = {distance back to referenced segment, length of referenced segment}
-    //
-    // if no long enough matching segment is found:
-    // reference = {0, 0}
-    private static short[][] traverse(byte[] array){
-        short[][] references = new short[array.length][2];
-        short[] reference;
-        for(int i = 0; i < array.length; i += reference[1] + 1) {
-            reference = search(array, i);
-            if(reference[1] >= MIN_REF_LEN) references[i] = reference;
+        // walks the cheapest parse backwards from the end, collecting where its references end
+        int[] ends = new int[(n - start) / MIN_REF_LEN + 1];
+        int count = 0;
+        for(int j = n - start; j > 0; j -= Math.max(1, length[j])) {
+            if(length[j] > 0) ends[count++] = j;
         }
 
-        return references;
+        int literalStart = start;
+        while(count-- > 0) {
+            int end = ends[count];
+            int referenceStart = start + end - length[end];
+            tokens.write(array, literalStart, referenceStart - literalStart, distance[end], length[end]);
+            literalStart = start + end;
+        }
+        tokens.write(array, literalStart, n - literalStart, 0, 0);
     }
 
-    // finds the longest byte segment which matches the segment starting at i
-    private static short[] search(byte[] array, int i){
-        short len;
-        short[] longest = new short[2];
-        for(int j = Math.max(0, i - Short.MAX_VALUE/2); j < i; j += len + 1) {
-            len = matchingLength(array, i, j, (short) 0);
-            if(len > longest[1]){
-                longest[0] = (short) (i - j);
-                longest[1] = len;
-            }
+    // estimated bits per output byte, from the byte frequencies of a greedy parse of the same data from start.
+    // the last entry is the average, used for bytes whose value is not known up front
+    private static float[] huffmanCostEstimate(ByteBuffer array, int start, MatchFinder finder){
+        LZTokenWriter greedy = new LZTokenWriter((array.limit() - start) / 2);
+        traverse(array, start, finder, greedy);
+        byte[] sample = greedy.toByteArray();
+
+        int[] frequencies = new int[256];
+        for(byte b : sample) frequencies[b & 0xff]++;
+
+        float[] bits = new float[257];
+        for(int b = 0; b < 256; b++) {
+            // unseen bytes are priced as if seen once
+            double p = Math.max(frequencies[b], 1) / (double) sample.length;
+            bits[b] = (float) Math.min(HuffmanCodec.MaxCodeLength(), Math.max(1, -Math.log(p) / Math.log(2)));
+            bits[256] += bits[b] * frequencies[b] / (float) sample.length;
         }
-        return longest;
+        return bits;
     }
 
-    // returns the length of two matching segments in an array, starting at i and j
-    private static short matchingLength(byte[] array, int i, int j, short count){
-        if(array[i] == array[j] && i < array.length - 1 && count < Short.MAX_VALUE) return matchingLength(array, ++i, ++j, ++count);
-        else return count;
+    // estimated bits of the varint holding the value
+    private static float varintBits(float[] bits, int value){
+        float total = 0;
+        while((value & ~0x7f) != 0) {
+            total += bits[value & 0x7f | 0x80];
+            value >>>= 7;
+        }
+        return total + bits[value];
     }
 
     // reads a file and puts the data into a byte array
@@ -117,6 +206,44 @@ public class LZCompressor {
 
     // takes file from pathIn, compresses it, and puts it in pathOut
     public static byte[] compress(byte[] raw) throws IOException {
-        return toCompressedArray(raw, traverse(raw));
+        return compress(raw, MatchFinder.DEFAULT_WINDOW_SIZE, MatchFinder.DEFAULT_CHAIN_DEPTH);
+    }
+
+    // compresses with a custom window size (at most MatchFinder.MAX_WINDOW_SIZE)
+    // and chain depth, i.e. how many earlier candidates are tried per position
+    public static byte[] compress(byte[] raw, int windowSize, int chainDepth) throws IOException {
+        return compress(ByteBuffer.wrap(raw), windowSize, chainDepth);
+    }
+
+    // compresses the remaining bytes of any buffer, e.g. a memory mapped file region, without copying them
+    public static byte[] compress(ByteBuffer raw) throws IOException {
+        return compress(raw, MatchFinder.DEFAULT_WINDOW_SIZE, MatchFinder.DEFAULT_CHAIN_DEPTH);
+    }
+
+    public static byte[] compress(ByteBuffer raw, int windowSize, int chainDepth) throws IOException {
+        return compress(raw, windowSize, chainDepth, CompressionLevel.GREEDY);
+    }
+
+    // compresses with the parse strategy and chain depth of the level
+    public static byte[] compress(byte[] raw, CompressionLevel level) throws IOException {
+        return compress(ByteBuffer.wrap(raw), level);
+    }
+
+    public static byte[] compress(ByteBuffer raw, CompressionLevel level) throws IOException {
+        return compress(raw, MatchFinder.DEFAULT_WINDOW_SIZE, level.getChainDepth(), level);
+    }
+
+    public static byte[] compress(ByteBuffer raw, int windowSize, int chainDepth, CompressionLevel level) throws IOException {
+        return toCompressedArray(raw.slice(), new MatchFinder(windowSize, chainDepth), level);
+    }
+
+    // compresses a message as if it followed the dictionary, so references may point into it. the window size and
+    // chain depth are the dictionary's, the level only picks the parse. restored by LZDecompressor with the same dictionary
+    public static byte[] compress(byte[] raw, LZDictionary dictionary) throws IOException {
+        return compress(raw, dictionary, CompressionLevel.GREEDY);
+    }
+
+    public static byte[] compress(byte[] raw, LZDictionary dictionary, CompressionLevel level) throws IOException {
+        return dictionary.compress(ByteBuffer.wrap(raw), level);
     }
 }
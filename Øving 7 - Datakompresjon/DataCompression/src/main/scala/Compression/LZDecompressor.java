@@ -1,61 +1,125 @@
 package Compression;
 
 import java.io.*;
-import java.nio.ByteBuffer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 
 public class LZDecompressor {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final int SHORT_COPY = 32; // copies up to this long are done a word at a time rather than by arraycopy
 
-    public static short joinBytesToShort(byte b1, byte b2){
-        ByteBuffer bb = ByteBuffer.allocate(2);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        bb.put(b1);
-        bb.put(b2);
-        return bb.getShort(0);
-    }
-
-    private static byte[] restore(byte[] compressed){
-        // reads the length of the original file from the first four bytes
-        ByteBuffer bb = ByteBuffer.allocate(4);
-        bb.put(Arrays.copyOf(compressed, 4));
-
-        byte[] restored = new byte[bb.getInt(0)];
-
-        int i = 0; // index in restored
-        int j = 4; // index in compressed
-        int x; // temporary index storage
-        short noUncomp;
-        short l;
-        short refDist;
-        short refLen;
-
-        while(j < compressed.length - 1){
-            // reads number of following uncompressed bytes and copies up to that point
-            noUncomp = joinBytesToShort(compressed[j++], compressed[j++]);
-            while(noUncomp-- > 0){
-                if(i >= restored.length - 1 || j >= compressed.length - 1) break;
-                restored[i++] = compressed[j++];
-            }
+    // reads the varint starting at position, and returns it in the low half and the position after it in the high half
+    static long readVarint(byte[] in, int position) throws IOException {
+        int value = 0;
+        byte b;
+        for(int shift = 0; ; shift += 7) {
+            if(position >= in.length || shift > 28) throw new IOException("Corrupt data: unreadable varint");
+            b = in[position++];
+            value |= (b & 0x7f) << shift;
+            if(b >= 0) return (long) position << 32 | (value & 0xffffffffL);
+        }
+    }
+
+    // restores data on the form written by LZCompressor, see LZTokenWriter for the tokens. the data is restored
+    // after the dictionary, which references may point back into.
+    // bounds are checked once per token, and the copies themselves are left unchecked.
+    // a long reference takes a few bytes, so the length in the header cannot be checked against the input. the
+    // output is grown as it is restored instead, so a corrupt length costs no more memory than the data restored
+    private static byte[] restore(byte[] compressed, byte[] dictionary) throws IOException {
+        long timer = CompressionMetrics.start();
+        long varint = readVarint(compressed, 0);
+        if((int) varint < 0 || (int) varint > Integer.MAX_VALUE - 8 - dictionary.length)
+            throw new IOException("Corrupt data: length " + (int) varint);
+        int end = dictionary.length + (int) varint; // index in restored the data ends at
+        byte[] restored = Arrays.copyOf(dictionary, (int) Math.min(end, dictionary.length + 4L * compressed.length + 64));
+
+        int i = dictionary.length; // index in restored
+        int j = (int) (varint >>> 32); // index in compressed
 
-            if(j >= compressed.length - 4) break;
-            refDist = joinBytesToShort(compressed[j++], compressed[j++]);
-            refLen = joinBytesToShort(compressed[j++], compressed[j++]);
+        while(j < compressed.length){
+            int token = compressed[j++] & 0xff;
 
-            x = i - refDist;
-            l = 0;
+            int literals = token >>> 4;
+            if(literals == LZTokenWriter.NIBBLE_MAX) {
+                varint = readVarint(compressed, j);
+                literals += (int) varint;
+                j = (int) (varint >>> 32);
+            }
+            if(literals < 0 || literals > compressed.length - j || literals > end - i)
+                throw new IOException("Corrupt data: " + literals + " literals at offset " + i);
+            if(literals > restored.length - i) restored = grow(restored, i + literals, end);
+            copy(compressed, j, restored, i, literals);
+            i += literals;
+            j += literals;
+
+            varint = readVarint(compressed, j);
+            int refDist = (int) varint;
+            j = (int) (varint >>> 32);
+            if(refDist == 0) continue;
 
-            while(l < refLen){
-                if(i < restored.length && x + l < restored.length){
-                    restored[i++] = restored[x + l++];
-                } else break;
+            int refLen = LZCompressor.MIN_REF_LEN + (token & 0xf);
+            if((token & 0xf) == LZTokenWriter.NIBBLE_MAX) {
+                varint = readVarint(compressed, j);
+                refLen += (int) varint;
+                j = (int) (varint >>> 32);
             }
+            if(refDist < 0 || refDist > i)
+                throw new IOException("Corrupt data: reference " + refDist + " bytes back at offset " + i);
+            if(refLen < LZCompressor.MIN_REF_LEN || refLen > end - i)
+                throw new IOException("Corrupt data: reference of " + refLen + " bytes at offset " + i);
+            if(refLen > restored.length - i) restored = grow(restored, i + refLen, end);
+
+            copyReference(restored, i, refDist, refLen);
+            i += refLen;
+        }
+
+        if(i != end)
+            throw new IOException("Corrupt data: restored " + (i - dictionary.length) + " of " + (end - dictionary.length) + " bytes");
+        CompressionMetrics.stage(CompressionStage.LZ77_DECOMPRESS, timer, compressed.length, end - dictionary.length);
+        return dictionary.length == 0 && restored.length == end ? restored : Arrays.copyOfRange(restored, dictionary.length, end);
+    }
+
+    // room for at least needed bytes, doubling the size so growing takes linear time, but never past end
+    private static byte[] grow(byte[] restored, int needed, int end){
+        return Arrays.copyOf(restored, (int) Math.min(end, Math.max(needed, 2L * restored.length)));
+    }
+
+    // copies a reference within the restored data, which overlaps the bytes it produces if it is shorter than its distance
+    private static void copyReference(byte[] data, int to, int distance, int length){
+        int from = to - distance;
+        if(distance >= length) copy(data, from, data, to, length);
+        else if(distance >= Long.BYTES && length <= SHORT_COPY && to + length + Long.BYTES <= data.length) {
+            // a whole word back is always written already, so words are copied in order
+            copyWords(data, from, data, to, length);
+        } else {
+            // the pattern of distance bytes repeats, so the copied part may be copied again, doubling each time
+            System.arraycopy(data, from, data, to, distance);
+            for(int copied = distance; copied < length; copied += copied)
+                System.arraycopy(data, to, data, to + copied, Math.min(copied, length - copied));
         }
-        restored[restored.length - 1] = compressed[compressed.length - 1];
-        return restored;
+    }
+
+    // non-overlapping copy, by words when short and there is room to write past the end
+    private static void copy(byte[] src, int from, byte[] dst, int to, int length){
+        if(length <= SHORT_COPY && from + length + Long.BYTES <= src.length && to + length + Long.BYTES <= dst.length)
+            copyWords(src, from, dst, to, length);
+        else System.arraycopy(src, from, dst, to, length);
+    }
+
+    // copies eight bytes at a time, so up to seven bytes past the end are read and written
+    private static void copyWords(byte[] src, int from, byte[] dst, int to, int length){
+        for(int end = to + length; to < end; to += Long.BYTES, from += Long.BYTES)
+            LONGS.set(dst, to, (long) LONGS.get(src, from));
     }
 
     public static byte [] decompress(byte[] zipped) throws IOException {
-        return restore(zipped);
+        return restore(zipped, new byte[0]);
+    }
+
+    // restores a message compressed with the dictionary, see LZDictionary
+    public static byte[] decompress(byte[] zipped, LZDictionary dictionary) throws IOException {
+        return restore(zipped, dictionary.content());
     }
 }
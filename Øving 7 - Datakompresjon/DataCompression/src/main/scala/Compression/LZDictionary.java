@@ -0,0 +1,86 @@
+package Compression;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/*
+Preset dictionary for small messages, which are too short to repeat much of themselves. The dictionary, e.g. a sample
+of typical messages, is indexed once, and every message is compressed as if it followed it, so references may point
+back into it:
+
+        +----------------------------------+---------+
+        | dictionary (last windowSize bytes) | message |
+        +----------------------------------+---------+
+                          <---- distance ----|
+
+The output has the usual form (see LZCompressor), and is restored by LZDecompressor given the same dictionary.
+A message only adds its own positions to the index, and they are taken out again afterwards, so the cost per message
+follows its length rather than that of the dictionary. Every thread compresses in its own copy of the index.
+ */
+public class LZDictionary {
+    private final byte[] content; // the part of the dictionary references can reach
+    private final MatchFinder index;
+    private final int id;
+    private final ThreadLocal<Workspace> workspaces;
+
+    // a thread's copy of the index, and a buffer holding the dictionary followed by the current message.
+    // static, as a workspace referring to its dictionary would keep the dictionary's ThreadLocal from being collected
+    private static final class Workspace {
+        private byte[] buffer;
+        private final MatchFinder finder;
+
+        private Workspace(byte[] content, MatchFinder index){
+            buffer = content.clone();
+            finder = new MatchFinder(index);
+        }
+    }
+
+    public LZDictionary(byte[] dictionary){
+        this(dictionary, MatchFinder.DEFAULT_WINDOW_SIZE, MatchFinder.DEFAULT_CHAIN_DEPTH);
+    }
+
+    public LZDictionary(byte[] dictionary, int windowSize, int chainDepth){
+        index = new MatchFinder(windowSize, chainDepth);
+        content = Arrays.copyOfRange(dictionary, Math.max(0, dictionary.length - windowSize), dictionary.length);
+        index.insertRange(ByteBuffer.wrap(content), 0, content.length, content.length);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(content);
+        id = (int) checksum.getValue();
+        workspaces = ThreadLocal.withInitial(() -> new Workspace(content, index));
+    }
+
+    // checksum of the dictionary, which e.g. a message header can hold to make sure both sides use the same one
+    public int id(){
+        return id;
+    }
+
+    // number of dictionary bytes in reach of references, at most the window size
+    public int size(){
+        return content.length;
+    }
+
+    byte[] content(){
+        return content;
+    }
+
+    byte[] compress(ByteBuffer raw, CompressionLevel level){
+        Workspace workspace = workspaces.get();
+        int n = content.length + raw.remaining();
+        if(workspace.buffer.length < n) workspace.buffer = Arrays.copyOf(workspace.buffer, Math.max(n, 2 * workspace.buffer.length));
+        raw.get(raw.position(), workspace.buffer, content.length, raw.remaining());
+        ByteBuffer data = ByteBuffer.wrap(workspace.buffer, 0, n);
+
+        byte[] compressed;
+        try {
+            compressed = LZCompressor.toCompressedArray(data, content.length, workspace.finder, index, level);
+        } catch(RuntimeException | Error e) {
+            // the index may hold part of the message, so the thread starts over with a fresh copy
+            workspaces.remove();
+            throw e;
+        }
+        workspace.finder.rollback(index, data, content.length, n, n);
+        return compressed;
+    }
+}
@@ -0,0 +1,134 @@
+package Compression;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+Streaming decompressor for the tokens written by LZOutputStream. Only the last window of output is kept,
+its size being read from the start of the stream.
+ */
+public class LZInputStream extends FilterInputStream {
+    private final byte[] single = new byte[1];
+    private byte[] history;     // allocated when the window size has been read
+    private int mask;
+    private long produced;      // number of bytes restored so far
+    private int token;          // token of the current literals and reference
+    private int literals;       // literals left in the current token
+    private int distance;       // distance of the current reference
+    private int referenceLeft;  // bytes left to copy from the current reference
+    private boolean inToken;    // literals have been read, the reference has not
+    private boolean eof;
+
+    public LZInputStream(InputStream in){
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if((off | len | (b.length - off - len)) < 0) throw new IndexOutOfBoundsException();
+        if(len == 0) return 0;
+        if(history == null) readWindowSize();
+
+        int n = 0;
+        while(n < len) {
+            if(literals > 0) {
+                int count = Math.min(literals, len - n);
+                if(in.readNBytes(b, off + n, count) != count) throw new EOFException("Truncated literals");
+                remember(b, off + n, count);
+                literals -= count;
+                n += count;
+            } else if(referenceLeft > 0) {
+                int count = Math.min(referenceLeft, len - n);
+                for(int k = 0; k < count; k++) {
+                    // byte by byte, as a reference may overlap the bytes it produces
+                    byte value = history[(int) (produced - distance) & mask];
+                    history[(int) produced++ & mask] = value;
+                    b[off + n++] = value;
+                }
+                referenceLeft -= count;
+            } else if(inToken) {
+                readReference();
+            } else if(eof || !readToken()) {
+                break;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] scrap = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        int count;
+        while(skipped < n && (count = read(scrap, 0, (int) Math.min(n - skipped, scrap.length))) > 0)
+            skipped += count;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return literals + referenceLeft;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void readWindowSize() throws IOException {
+        int windowSize = readVarint();
+        if(windowSize < 1 || windowSize > MatchFinder.MAX_WINDOW_SIZE)
+            throw new IOException("Corrupt stream: window size " + windowSize);
+
+        history = new byte[Integer.highestOneBit(windowSize) << 1];
+        mask = history.length - 1;
+    }
+
+    // starts the next token, returns false if the stream ended cleanly
+    private boolean readToken() throws IOException {
+        token = in.read();
+        if(token == -1) {
+            eof = true;
+            return false;
+        }
+        literals = token >>> 4;
+        if(literals == LZTokenWriter.NIBBLE_MAX) literals += readVarint();
+        inToken = true;
+        return true;
+    }
+
+    private void readReference() throws IOException {
+        distance = readVarint();
+        inToken = false;
+        if(distance == 0) return;
+
+        int length = LZCompressor.MIN_REF_LEN + (token & 0xf);
+        if((token & 0xf) == LZTokenWriter.NIBBLE_MAX) length += readVarint();
+
+        if(distance > produced || distance > history.length)
+            throw new IOException("Corrupt stream: reference " + distance + " bytes back at offset " + produced);
+        referenceLeft = length;
+    }
+
+    private void remember(byte[] b, int off, int len){
+        for(int k = 0; k < len; k++) history[(int) produced++ & mask] = b[off + k];
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        int b;
+        for(int shift = 0; ; shift += 7) {
+            b = in.read();
+            if(b == -1) throw new EOFException("Truncated token");
+            value |= (b & 0x7f) << shift;
+            if(b < 0x80) return value;
+        }
+    }
+}
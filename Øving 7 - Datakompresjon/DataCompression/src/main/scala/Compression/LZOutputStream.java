@@ -0,0 +1,134 @@
+package Compression;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/*
+Streaming LZ77 compressor. Only the sliding window and the lookahead are kept in memory, so the memory use
+is the same no matter how much is written, and tokens are passed on as soon as they are found.
+
+The stream starts with the window size as a varint, so the decompressor knows how much history to keep.
+Tokens follow as described in LZTokenWriter, and the stream ends where the underlying stream ends.
+ */
+public class LZOutputStream extends FilterOutputStream {
+    public static final int MAX_REF_LEN = 1 << 12; // also the size of the lookahead
+
+    private final MatchFinder finder;
+    private final LZTokenWriter tokens = new LZTokenWriter(MAX_REF_LEN);
+    private final byte[] buffer;
+    private final ByteBuffer view;  // the buffer as seen by the match finder
+    private int end;          // number of bytes in buffer
+    private int position;     // next position in buffer to be parsed
+    private int literalStart; // start of the literals not yet written
+    private boolean closed;
+
+    public LZOutputStream(OutputStream out){
+        this(out, MatchFinder.DEFAULT_WINDOW_SIZE, MatchFinder.DEFAULT_CHAIN_DEPTH);
+    }
+
+    public LZOutputStream(OutputStream out, int windowSize, int chainDepth){
+        super(out);
+        finder = new MatchFinder(windowSize, chainDepth);
+        // room for two slide units, so that at least a whole window is kept after sliding
+        buffer = new byte[2 * finder.slideUnit() + MAX_REF_LEN];
+        view = ByteBuffer.wrap(buffer);
+        tokens.writeVarint(windowSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if(end == buffer.length) slide();
+        buffer[end++] = (byte) b;
+        if(end - position >= MAX_REF_LEN) parse(false);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if((off | len | (b.length - off - len)) < 0) throw new IndexOutOfBoundsException();
+
+        while(len > 0) {
+            if(end == buffer.length) slide();
+            int n = Math.min(len, buffer.length - end);
+            System.arraycopy(b, off, buffer, end, n);
+            end += n;
+            off += n;
+            len -= n;
+            if(end - position >= MAX_REF_LEN) parse(false);
+        }
+    }
+
+    // compresses everything written so far and flushes the underlying stream. more may be written afterwards
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        parse(true);
+        writeLiterals();
+        tokens.writeTo(out);
+        out.flush();
+    }
+
+    // compresses the rest of the data without closing the underlying stream
+    public void finish() throws IOException {
+        if(closed) return;
+        parse(true);
+        writeLiterals();
+        tokens.writeTo(out);
+        closed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(closed) return;
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    // parses positions while enough lookahead is buffered, or everything when draining
+    private void parse(boolean drain) throws IOException {
+        int stop = drain ? end : end - MAX_REF_LEN;
+        while(position < stop) {
+            int len = finder.longestMatch(view, position, end, MAX_REF_LEN);
+            if(len >= LZCompressor.MIN_REF_LEN) {
+                tokens.write(view, literalStart, position - literalStart, finder.distance(), len);
+                finder.insertRange(view, position, position + len, end);
+                position += len;
+                literalStart = position;
+            } else {
+                finder.insert(view, position, end);
+                position++;
+            }
+        }
+        if(tokens.size() >= MAX_REF_LEN) tokens.writeTo(out);
+    }
+
+    // drops the start of the buffer while keeping at least a window of history
+    private void slide() throws IOException {
+        // literals are written first, so that they are never slid out
+        writeLiterals();
+        int shift = (position - finder.getWindowSize()) / finder.slideUnit() * finder.slideUnit();
+
+        System.arraycopy(buffer, shift, buffer, 0, end - shift);
+        finder.slide(shift);
+        end -= shift;
+        position -= shift;
+        literalStart -= shift;
+    }
+
+    // writes the pending literals as a token without a reference
+    private void writeLiterals(){
+        if(literalStart == position) return;
+        tokens.write(view, literalStart, position - literalStart, 0, 0);
+        literalStart = position;
+    }
+
+    private void ensureOpen() throws IOException {
+        if(closed) throw new IOException("Stream closed");
+    }
+}
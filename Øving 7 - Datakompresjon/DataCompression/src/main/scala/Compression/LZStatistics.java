@@ -0,0 +1,121 @@
+package Compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+Make-up of LZ77 tokens: how many bytes are literals and how many are covered by references, and how long
+and how far back the references are. The histograms count references by the highest bit of their length and distance,
+so bucket k holds the values from 2^k up to 2^(k+1) - 1.
+ */
+public class LZStatistics {
+    public static final int BUCKETS = 32;
+
+    private long literals;
+    private long references;
+    private long referencedBytes;
+    private long distances;
+    private final long[] lengthHistogram = new long[BUCKETS];
+    private final long[] distanceHistogram = new long[BUCKETS];
+
+    // reads the tokens of data compressed by LZCompressor, skipping the literals
+    public static LZStatistics of(byte[] lz77Code) throws IOException {
+        LZStatistics statistics = new LZStatistics();
+        int j = (int) (LZDecompressor.readVarint(lz77Code, 0) >>> 32);
+        while(j < lz77Code.length) {
+            int token = lz77Code[j++] & 0xff;
+            long varint;
+
+            int literals = token >>> 4;
+            if(literals == LZTokenWriter.NIBBLE_MAX) {
+                varint = LZDecompressor.readVarint(lz77Code, j);
+                literals += (int) varint;
+                j = (int) (varint >>> 32);
+            }
+            statistics.literals += literals;
+            j += literals;
+
+            varint = LZDecompressor.readVarint(lz77Code, j);
+            int distance = (int) varint;
+            j = (int) (varint >>> 32);
+            if(distance == 0) continue;
+
+            int length = LZCompressor.MIN_REF_LEN + (token & 0xf);
+            if((token & 0xf) == LZTokenWriter.NIBBLE_MAX) {
+                varint = LZDecompressor.readVarint(lz77Code, j);
+                length += (int) varint;
+                j = (int) (varint >>> 32);
+            }
+            statistics.addReference(length, distance);
+        }
+        return statistics;
+    }
+
+    private void addReference(int length, int distance){
+        references++;
+        referencedBytes += length;
+        distances += distance;
+        lengthHistogram[31 - Integer.numberOfLeadingZeros(length)]++;
+        distanceHistogram[31 - Integer.numberOfLeadingZeros(distance)]++;
+    }
+
+    // adds the counts of other to these, so statistics of many inputs can be summed up
+    public synchronized void add(LZStatistics other){
+        literals += other.literals;
+        references += other.references;
+        referencedBytes += other.referencedBytes;
+        distances += other.distances;
+        for(int k = 0; k < BUCKETS; k++) {
+            lengthHistogram[k] += other.lengthHistogram[k];
+            distanceHistogram[k] += other.distanceHistogram[k];
+        }
+    }
+
+    public long getLiterals(){
+        return literals;
+    }
+
+    public long getReferences(){
+        return references;
+    }
+
+    public long getReferencedBytes(){
+        return referencedBytes;
+    }
+
+    // share of the input written as literals
+    public double literalRatio(){
+        return literals + referencedBytes == 0 ? 0 : literals / (double) (literals + referencedBytes);
+    }
+
+    public double averageLength(){
+        return references == 0 ? 0 : referencedBytes / (double) references;
+    }
+
+    public double averageDistance(){
+        return references == 0 ? 0 : distances / (double) references;
+    }
+
+    public long[] lengthHistogram(){
+        return lengthHistogram.clone();
+    }
+
+    public long[] distanceHistogram(){
+        return distanceHistogram.clone();
+    }
+
+    @Override
+    public synchronized String toString(){
+        return String.format("literals: %d (%.1f%%), references: %d, average length: %.1f, average distance: %.1f%n" +
+                        "lengths by power of two: %s%ndistances by power of two: %s",
+                literals, 100 * literalRatio(), references, averageLength(), averageDistance(),
+                Arrays.toString(trimmed(lengthHistogram)), Arrays.toString(trimmed(distanceHistogram)));
+    }
+
+    // the histogram without its trailing empty buckets
+    private static long[] trimmed(long[] histogram){
+        int end = histogram.length;
+        while(end > 0 && histogram[end - 1] == 0) end--;
+        return Arrays.copyOf(histogram, end);
+    }
+}
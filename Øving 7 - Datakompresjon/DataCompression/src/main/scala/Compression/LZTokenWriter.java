@@ -0,0 +1,82 @@
+package Compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+Writes LZ77 tokens. Every token is a run of literals followed by an optional reference:
+            +-------+---------------+----------+----------+---------------+
+            | token | literal count | literals | distance | length        |
+            |       | extension     |   ...    | (varint) | extension     |
+            +-------+---------------+----------+----------+---------------+
+The high nibble of the token is the literal count, and the low nibble the reference length minus MIN_REF_LEN.
+A nibble of 15 means the rest of the value follows as a varint extension. A distance of 0 means no reference,
+in which case neither the length nibble nor its extension is used. Varints hold 7 bits per byte, least
+significant first, with the high bit set on every byte but the last.
+ */
+public class LZTokenWriter {
+    public static final int NIBBLE_MAX = 15;
+
+    private byte[] tokens;
+    private int size;
+
+    public LZTokenWriter(int initialCapacity){
+        tokens = new byte[Math.max(16, initialCapacity)];
+    }
+
+    // writes count literals from source, starting at literalStart, followed by a reference (distance 0 for none)
+    public void write(ByteBuffer source, int literalStart, int count, int distance, int length){
+        ensureCapacity(count + 16);
+
+        int literalNibble = Math.min(count, NIBBLE_MAX);
+        int lengthNibble = distance == 0 ? 0 : Math.min(length - LZCompressor.MIN_REF_LEN, NIBBLE_MAX);
+        tokens[size++] = (byte) (literalNibble << 4 | lengthNibble);
+        if(literalNibble == NIBBLE_MAX) writeVarint(count - NIBBLE_MAX);
+
+        source.get(literalStart, tokens, size, count);
+        size += count;
+
+        writeVarint(distance);
+        if(distance != 0 && lengthNibble == NIBBLE_MAX) writeVarint(length - LZCompressor.MIN_REF_LEN - NIBBLE_MAX);
+    }
+
+    public void writeVarint(int value){
+        ensureCapacity(5);
+        size = writeVarint(tokens, size, value);
+    }
+
+    // writes the varint at position, which needs varintLength(value) bytes of room, and returns the position after it
+    static int writeVarint(byte[] out, int position, int value){
+        while((value & ~0x7f) != 0) {
+            out[position++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public byte[] toByteArray(){
+        return Arrays.copyOf(tokens, size);
+    }
+
+    // passes the written tokens on and empties the writer
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(tokens, 0, size);
+        size = 0;
+    }
+
+    private void ensureCapacity(int extra){
+        if(size + extra > tokens.length) tokens = Arrays.copyOf(tokens, Math.max(2 * tokens.length, size + extra));
+    }
+
+    // number of bytes a varint of the value takes
+    static int varintLength(int value){
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+    }
+}
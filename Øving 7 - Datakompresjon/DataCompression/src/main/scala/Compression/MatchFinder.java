@@ -0,0 +1,166 @@
+package Compression;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+Hash-chain match finder. Every position is hashed by its first four bytes, and positions sharing
+a hash are linked from newest to oldest:
+
+        head[hash(data[i..i+3])] -> i -> prev[i] -> prev[prev[i]] -> ...
+
+A search only walks the chain of the current hash, stopping at the edge of the window or after
+chainDepth candidates, so the cost per position is bounded instead of growing with the window size.
+
+Data is read through a ByteBuffer with absolute indices, so heap arrays (wrapped), direct and memory mapped buffers
+are searched alike.
+ */
+public class MatchFinder {
+    public static final int DEFAULT_WINDOW_SIZE = Short.MAX_VALUE / 2;
+    public static final int MAX_WINDOW_SIZE = 1 << 24;
+    public static final int DEFAULT_CHAIN_DEPTH = 64;
+    public static final int PREFIX_LEN = 4; // number of bytes hashed per position
+
+    private static final int HASH_BITS = 16;
+    private static final int NIL = -1;
+
+    private final int windowSize;
+    private final int chainDepth;
+    private final int[] head;  // most recent position for each hash
+    private final int[] prev;  // previous position with the same hash, indexed by position & mask
+    private final int mask;
+
+    private int distance; // distance of the last match found
+
+    public MatchFinder(){
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_CHAIN_DEPTH);
+    }
+
+    public MatchFinder(int windowSize, int chainDepth){
+        if(windowSize < 1 || windowSize > MAX_WINDOW_SIZE)
+            throw new IllegalArgumentException("Window size must be between 1 and " + MAX_WINDOW_SIZE + ": " + windowSize);
+        if(chainDepth < 1) throw new IllegalArgumentException("Chain depth must be positive: " + chainDepth);
+
+        this.windowSize = windowSize;
+        this.chainDepth = chainDepth;
+
+        // the chain table is a ring one power of two larger than the window, so live entries are never overwritten
+        int ringSize = Integer.highestOneBit(windowSize) << 1;
+        this.mask = ringSize - 1;
+        this.prev = new int[ringSize];
+        this.head = new int[1 << HASH_BITS];
+        Arrays.fill(head, NIL);
+    }
+
+    // a copy with the same positions indexed, which rollback can take back to them
+    MatchFinder(MatchFinder original){
+        this.windowSize = original.windowSize;
+        this.chainDepth = original.chainDepth;
+        this.mask = original.mask;
+        this.prev = original.prev.clone();
+        this.head = original.head.clone();
+    }
+
+    public int getWindowSize(){
+        return windowSize;
+    }
+
+    public int getChainDepth(){
+        return chainDepth;
+    }
+
+    // distance back to the match found by the last call to longestMatch
+    public int distance(){
+        return distance;
+    }
+
+    // forgets every indexed position
+    public void reset(){
+        Arrays.fill(head, NIL);
+    }
+
+    // buffers using this finder may only be slid by multiples of this, see slide
+    public int slideUnit(){
+        return mask + 1;
+    }
+
+    // moves every indexed position shift bytes back, used when the caller drops the start of its buffer.
+    // positions which would become negative are forgotten
+    public void slide(int shift){
+        if(shift % slideUnit() != 0)
+            throw new IllegalArgumentException("Shift must be a multiple of " + slideUnit() + ": " + shift);
+
+        // as shift is a multiple of the ring size, every position keeps its slot in prev
+        for(int h = 0; h < head.length; h++) head[h] = head[h] >= shift ? head[h] - shift : NIL;
+        for(int k = 0; k < prev.length; k++) prev[k] = prev[k] >= shift ? prev[k] - shift : NIL;
+    }
+
+    // takes a copy of the original back to the original's state, undoing the inserts of every position in [from, to)
+    // made since it was copied. unlinking them newest first restores each head, so the cost follows the number of
+    // positions rather than the size of the tables, as long as no two of them shared a slot in the ring
+    void rollback(MatchFinder original, ByteBuffer data, int from, int to, int limit){
+        if(to - from > prev.length) {
+            System.arraycopy(original.head, 0, head, 0, head.length);
+            System.arraycopy(original.prev, 0, prev, 0, prev.length);
+            return;
+        }
+        for(int i = Math.min(to, limit - PREFIX_LEN + 1) - 1; i >= from; i--) {
+            head[hash(data, i)] = prev[i & mask];
+            prev[i & mask] = original.prev[i & mask];
+        }
+    }
+
+    // multiplicative hash of the four bytes starting at i
+    private static int hash(ByteBuffer data, int i){
+        return (data.getInt(i) * 0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+
+    // adds position i to the chains, must be called for positions in increasing order
+    public void insert(ByteBuffer data, int i, int limit){
+        if(i + PREFIX_LEN > limit) return;
+        int h = hash(data, i);
+        prev[i & mask] = head[h];
+        head[h] = i;
+    }
+
+    // adds every position in [from, to) to the chains
+    public void insertRange(ByteBuffer data, int from, int to, int limit){
+        for(int i = from; i < to; i++) insert(data, i, limit);
+    }
+
+    // returns the length of the longest match for the segment starting at i, and stores its distance.
+    // matches are at most maxLength long and never read at or past limit. position i must not be inserted yet
+    public int longestMatch(ByteBuffer data, int i, int limit, int maxLength){
+        distance = 0;
+        if(i + PREFIX_LEN > limit) return 0;
+
+        int longest = 0;
+        int max = Math.min(maxLength, limit - i);
+        int candidate = head[hash(data, i)];
+
+        for(int depth = chainDepth; candidate != NIL && depth > 0; depth--) {
+            if(i - candidate > windowSize) break;
+
+            // the byte which would extend the current best is checked first, as most candidates fail there
+            if(data.get(candidate + longest) == data.get(i + longest)) {
+                int len = matchingLength(data, i, candidate, max);
+                if(len > longest) {
+                    longest = len;
+                    distance = i - candidate;
+                    if(len == max) break;
+                }
+            }
+            candidate = prev[candidate & mask];
+        }
+        return longest;
+    }
+
+    // returns the length of two matching segments in an array, starting at i and j (j < i)
+    static int matchingLength(ByteBuffer data, int i, int j, int max){
+        int len = 0;
+        // eight bytes at a time while possible, then the odd bytes
+        while(len + Long.BYTES <= max && data.getLong(i + len) == data.getLong(j + len)) len += Long.BYTES;
+        while(len < max && data.get(i + len) == data.get(j + len)) len++;
+        return len;
+    }
+}
@@ -0,0 +1,78 @@
+package Compression
+
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Huffman codecs trained once (see HuffmanCodec.train) and registered by both the sender and the receiver of many
+ * small payloads, which refer to their codec by ID instead of embedding its table:
+ *
+ *   table ID (4) | raw length (varint) | codes, padded to whole bytes
+ *
+ * This leaves out the 128 byte table and the 8 byte bit count HuffmanCodec.encode writes, and building a tree for
+ * every payload. IDs follow from the tables, so both sides agree on them as long as they register the same tables.
+ */
+
+class SharedHuffmanTables {
+
+  private val codecs = new ConcurrentHashMap[Int, HuffmanCodec]()
+
+  /**
+   * Makes the codec available to encode and decode by its ID.
+   * @return The ID of the codec.
+   */
+
+  def register(codec: HuffmanCodec): Int = {
+    val registered = codecs.putIfAbsent(codec.id, codec)
+    if (registered != null && !java.util.Arrays.equals(registered.table, codec.table))
+      throw new IllegalArgumentException(s"Another table is registered with the ID ${codec.id}")
+    codec.id
+  }
+
+  /**
+   * Registers the codec of a table received from the other side, see HuffmanCodec.table.
+   */
+
+  def register(table: Array[Byte]): Int = register(HuffmanCodec.fromTable(table))
+
+  def apply(id: Int): HuffmanCodec = {
+    val codec = codecs.get(id)
+    if (codec == null) throw new IllegalArgumentException(s"No table is registered with the ID $id")
+    codec
+  }
+
+  /**
+   * @param id ID of a registered codec, which needs a code for every byte in raw.
+   * @param raw Any data.
+   * @return The payload, referring to the codec by its ID.
+   */
+
+  def encode(id: Int, raw: Array[Byte]): Array[Byte] = {
+    val codec = apply(id)
+    val payload = ByteBuffer.allocate(4 + LZTokenWriter.varintLength(raw.length) + codec.payloadLength(raw).toInt).putInt(id)
+    payload.position(LZTokenWriter.writeVarint(payload.array(), 4, raw.length))
+    codec.encodePayload(raw, payload)
+    payload.array()
+  }
+
+  /**
+   * Decodes a payload written by encode, with the codec it refers to.
+   */
+
+  def decode(zipped: Array[Byte]): Array[Byte] = {
+    if (zipped.length < 5) throw new IllegalArgumentException("Could not parse coding")
+    val codec = apply(ByteBuffer.wrap(zipped).getInt(0))
+    val varint = try LZDecompressor.readVarint(zipped, 4) catch {
+      case _: IOException => throw new IllegalArgumentException("Could not parse coding")
+    }
+    if (varint.toInt < 0) throw new IllegalArgumentException("Could not parse coding")
+
+    val decoded = new Array[Byte](varint.toInt)
+    val start = (varint >>> 32).toInt
+    val bits = codec.decodePayload(ByteBuffer.wrap(zipped), start, zipped.length, decoded)
+    // without a bit count, the codes must end within the last byte
+    if ((bits + 7) >>> 3 != zipped.length - start) throw new IllegalArgumentException("Could not parse coding")
+    decoded
+  }
+}